@@ -0,0 +1,44 @@
+package training.afpa.cda24060.squartrbnb.benchmark;
+
+import training.afpa.cda24060.squartrbnb.dto.UserMapper;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+import training.afpa.cda24060.squartrbnb.entity.Role;
+import training.afpa.cda24060.squartrbnb.entity.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jeux de données partagés par les benchmarks JMH (mêmes formes que UserReadPathBenchmark).
+ */
+final class BenchmarkData {
+
+    private static final Role ROLE = new Role(1, "UTILISATEUR", null);
+
+    private BenchmarkData() {
+    }
+
+    static User user(int i) {
+        User user = new User();
+        user.setId(i);
+        user.setUsername("user" + i);
+        user.setNom("Nom" + i);
+        user.setPrenom("Prenom" + i);
+        user.setEmail("user" + i + "@example.com");
+        user.setDateNaissance(LocalDate.of(1990, 1, 1).plusDays(i % 5_000));
+        user.setPhotoPath("uploads/users/" + i + ".jpg");
+        user.setPassword("$2a$10$abcdefghijklmnopqrstuuQzWnq6m5fXQ5x1V8p1ZkC0sYH4p2eK");
+        user.setRole(ROLE);
+        return user;
+    }
+
+    static List<UserResponseDTO> dtos(int count) {
+        UserMapper mapper = new UserMapper();
+        List<UserResponseDTO> dtos = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            dtos.add(mapper.toResponseDTO(user(i)));
+        }
+        return dtos;
+    }
+}
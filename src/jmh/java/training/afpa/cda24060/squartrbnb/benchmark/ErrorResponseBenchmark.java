@@ -0,0 +1,60 @@
+package training.afpa.cda24060.squartrbnb.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import training.afpa.cda24060.squartrbnb.exception.ErrorResponse;
+import training.afpa.cda24060.squartrbnb.exception.GlobalExceptionHandler;
+import training.afpa.cda24060.squartrbnb.exception.ResourceNotFoundException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chemin d'erreur de l'API : construction de l'exception (pile d'appels comprise), de
+ * l'{@link ErrorResponse} par {@link GlobalExceptionHandler}, puis sérialisation.
+ *
+ * Les logs du handler sont coupés (src/jmh/resources/logback-test.xml) : seul le code de
+ * l'application est mesuré, pas l'écriture sur la console.
+ *
+ * Lancement : mvn verify -Pjmh -Djmh.include=ErrorResponseBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorResponseBenchmark {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private WebRequest request;
+    private ResourceNotFoundException notFound;
+
+    @Setup
+    public void setUp() {
+        request = new ServletWebRequest(new MockHttpServletRequest("GET", "/api/users/42"));
+        notFound = new ResourceNotFoundException("Utilisateur", "id", 42);
+    }
+
+    /** Exception déjà construite : coût du handler seul */
+    @Benchmark
+    public ResponseEntity<ErrorResponse> handleNotFound() {
+        return handler.handleNotFound(notFound, request);
+    }
+
+    /** Cas réel : exception créée à chaque erreur (remplissage de la pile compris) puis traitée */
+    @Benchmark
+    public ResponseEntity<ErrorResponse> throwAndHandleNotFound() {
+        return handler.handleNotFound(new ResourceNotFoundException("Utilisateur", "id", 42), request);
+    }
+
+    @Benchmark
+    public byte[] handleAndSerialize() {
+        return objectMapper.writeValueAsBytes(handler.handleNotFound(notFound, request).getBody());
+    }
+}
@@ -0,0 +1,59 @@
+package training.afpa.cda24060.squartrbnb.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import training.afpa.cda24060.squartrbnb.dto.UserMapper;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+import training.afpa.cda24060.squartrbnb.entity.Role;
+import training.afpa.cda24060.squartrbnb.entity.User;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût du passage entité → DTO : {@link UserMapper#toResponseDTO(User)} (deux builders Lombok)
+ * comparé au constructeur utilisé par les projections JPQL.
+ *
+ * Lancement : mvn verify -Pjmh -Djmh.include=UserMappingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    private final UserMapper userMapper = new UserMapper();
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = BenchmarkData.user(42);
+    }
+
+    @Benchmark
+    public UserResponseDTO mapperWithBuilders() {
+        return userMapper.toResponseDTO(user);
+    }
+
+    @Benchmark
+    public UserResponseDTO projectionConstructor() {
+        Role role = user.getRole();
+        return new UserResponseDTO(user.getId(), user.getUsername(), user.getNom(), user.getPrenom(),
+                user.getEmail(), user.getDateNaissance(), user.getPhotoPath(), role.getId(), role.getName());
+    }
+
+    @Benchmark
+    public UserResponseDTO builderOnly() {
+        return UserResponseDTO.builder()
+                .id(42)
+                .username("user42")
+                .nom("Nom42")
+                .prenom("Prenom42")
+                .email("user42@example.com")
+                .dateNaissance(LocalDate.of(1990, 1, 1))
+                .photoPath("uploads/users/42.jpg")
+                .role(UserResponseDTO.RoleResponseDTO.builder().id(1).name("UTILISATEUR").build())
+                .build();
+    }
+}
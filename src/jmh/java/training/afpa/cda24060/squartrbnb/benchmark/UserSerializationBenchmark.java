@@ -0,0 +1,42 @@
+package training.afpa.cda24060.squartrbnb.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation Jackson d'une page d'utilisateurs ({@code List<UserResponseDTO>}), telle que
+ * renvoyée par GET /api/users (20 par défaut, 100 au maximum) ou par le batch.
+ *
+ * Lancement : mvn verify -Pjmh -Djmh.include=UserSerializationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserSerializationBenchmark {
+
+    @Param({"20", "100", "1000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private List<UserResponseDTO> users;
+
+    @Setup
+    public void setUp() {
+        users = BenchmarkData.dtos(size);
+        // Sérialiseurs construits et mis en cache avant la mesure
+        objectMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] writeList() {
+        return objectMapper.writeValueAsBytes(users);
+    }
+}
@@ -2,8 +2,10 @@ package training.afpa.cda24060.squartrbnb;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SquArtRbNbApplication {
 
     public static void main(String[] args) {
@@ -1,83 +1,164 @@
 package training.afpa.cda24060.squartrbnb.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import training.afpa.cda24060.squartrbnb.dto.PhotoUploadStatusDTO;
+import training.afpa.cda24060.squartrbnb.service.PhotoMetrics;
+import training.afpa.cda24060.squartrbnb.service.PhotoStorageService;
+import training.afpa.cda24060.squartrbnb.service.PhotoUploadSessionService;
 
 import java.io.IOException;
-import java.nio.file.*;
-import java.util.UUID;
+import java.io.InputStream;
 
 /**
  * Endpoint dédié à l'upload de photos utilisateur.
  *
  * POST /api/users/photo  → reçoit un fichier, le sauvegarde, retourne le chemin relatif
+ * POST /api/users/photo/stream → même chose, image brute dans le corps (sans multipart)
+ * POST /api/users/photo/uploads?size=… → upload par morceaux, reprenable (voir PhotoUploadSessionService)
+ *   PUT    /uploads/{id}/chunks/{n} → morceau n
+ *   GET    /uploads/{id}            → morceaux reçus / manquants
+ *   POST   /uploads/{id}/commit     → assemble et retourne le chemin relatif
+ *   DELETE /uploads/{id}            → abandon
  * GET  /api/users/photo/{filename} → sert le fichier (optionnel si déjà servi en static)
  */
 @RestController
 @RequestMapping("/api/users/photo")
+@RequiredArgsConstructor
 @Log4j2
 public class PhotoController {
 
-    // Dossier de stockage — configurable via application.properties
-    @Value("${app.upload.dir:uploads/users}")
-    private String uploadDir;
+    private final PhotoStorageService photoStorageService;
+    private final PhotoUploadSessionService photoUploadSessionService;
+    private final PhotoMetrics photoMetrics;
+
+    @Value("${spring.servlet.multipart.max-file-size:10MB}")
+    private DataSize maxFileSize;
 
     /**
      * Upload d'une photo.
-     * Retourne le chemin relatif : "uploads/users/uuid.jpg"
+     * Retourne le chemin relatif : "uploads/users/<sha-256>.jpg"
      */
     @PostMapping
     public ResponseEntity<String> uploadPhoto(@RequestParam("file") MultipartFile file) {
 
         if (file == null || file.isEmpty()) {
+            photoMetrics.rejected(PhotoMetrics.Rejection.EMPTY);
             return ResponseEntity.badRequest().body("Aucun fichier reçu.");
         }
 
         // Vérification du type MIME
         String contentType = file.getContentType();
         if (contentType == null || !contentType.startsWith("image/")) {
+            photoMetrics.rejected(PhotoMetrics.Rejection.TYPE);
             return ResponseEntity.badRequest().body("Le fichier doit être une image.");
         }
 
         try {
-            // Créer le dossier si nécessaire
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-                log.info("Dossier uploads créé : {}", uploadPath.toAbsolutePath());
-            }
-
-            // Générer un nom unique
-            String originalFilename = file.getOriginalFilename();
-            String extension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-            }
-            String newFilename = UUID.randomUUID().toString() + extension;
-
-            // Sauvegarder le fichier
-            Path targetPath = uploadPath.resolve(newFilename);
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-
-            // Retourner uniquement le chemin public (ex: "uploads/users/uuid.jpg")
-            // On extrait la partie après "static/" pour avoir l'URL accessible par le navigateur
-            String publicPath;
-            if (uploadDir.contains("static/")) {
-                publicPath = uploadDir.substring(uploadDir.indexOf("static/") + "static/".length())
-                             + "/" + newFilename;
-            } else {
-                publicPath = uploadDir + "/" + newFilename;
-            }
-            log.info("Photo uploadée : {}", publicPath);
-
-            return ResponseEntity.ok(publicPath);
+            // Stockage par hash du contenu : une image déjà connue n'est pas réécrite
+            PhotoStorageService.StoredPhoto stored = photoStorageService.store(file, file.getOriginalFilename());
+            log.info("Photo uploadée : {}{}", stored.publicPath(), stored.deduplicated() ? " (déjà stockée)" : "");
+
+            return ResponseEntity.ok(stored.publicPath());
+
+        } catch (IOException e) {
+            log.error("Erreur upload photo : {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Erreur lors de l'upload : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Upload en flux : le corps de la requête est l'image elle-même (Content-Type image/*).
+     * Lu une seule fois et écrit directement dans le dossier final, sans fichier temporaire
+     * multipart. Rejeté dès les premiers octets si ce n'est pas une image, dès que la taille
+     * maximale est dépassée sinon.
+     */
+    @PostMapping(value = "/stream", consumes = {"image/jpeg", "image/png", "image/gif", "image/webp"})
+    public ResponseEntity<String> uploadPhotoStream(HttpServletRequest request) {
+        long maxSize = maxFileSize.toBytes();
+        if (request.getContentLengthLong() > maxSize) {
+            photoMetrics.rejected(PhotoMetrics.Rejection.SIZE);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Fichier trop volumineux (max " + maxFileSize + ").");
+        }
+
+        try (InputStream in = request.getInputStream()) {
+            PhotoStorageService.StoredPhoto stored = photoStorageService.storeStream(in, maxSize);
+            log.info("Photo uploadée (flux) : {}{}", stored.publicPath(), stored.deduplicated() ? " (déjà stockée)" : "");
+            return ResponseEntity.ok(stored.publicPath());
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (MaxUploadSizeExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Fichier trop volumineux (max " + maxFileSize + ").");
+        } catch (IOException e) {
+            log.error("Erreur upload photo : {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Erreur lors de l'upload : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ouvre un upload par morceaux pour un fichier de {@code size} octets.
+     * La réponse donne l'identifiant, la taille des morceaux et leur nombre.
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<?> openUpload(@RequestParam long size) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(photoUploadSessionService.open(size));
+        } catch (MaxUploadSizeExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Fichier trop volumineux (max " + maxFileSize + ").");
+        } catch (IOException e) {
+            log.error("Erreur upload photo : {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Erreur lors de l'upload : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Envoie le morceau {@code index} (corps brut). Un morceau déjà reçu peut être renvoyé.
+     */
+    @PutMapping(value = "/uploads/{uploadId}/chunks/{index}", consumes = "application/octet-stream")
+    public ResponseEntity<PhotoUploadStatusDTO> uploadChunk(@PathVariable String uploadId,
+                                                            @PathVariable int index,
+                                                            HttpServletRequest request) throws IOException {
+        try (InputStream in = request.getInputStream()) {
+            return ResponseEntity.ok(photoUploadSessionService.writeChunk(uploadId, index, in));
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<PhotoUploadStatusDTO> uploadStatus(@PathVariable String uploadId) {
+        return ResponseEntity.ok(photoUploadSessionService.status(uploadId));
+    }
 
+    /**
+     * Termine l'upload : 409 s'il manque des morceaux, 400 si ce n'est pas une image.
+     * Retourne le chemin relatif, comme les autres uploads.
+     */
+    @PostMapping("/uploads/{uploadId}/commit")
+    public ResponseEntity<String> commitUpload(@PathVariable String uploadId) {
+        try {
+            PhotoStorageService.StoredPhoto stored = photoUploadSessionService.commit(uploadId);
+            log.info("Photo uploadée (morceaux) : {}{}", stored.publicPath(), stored.deduplicated() ? " (déjà stockée)" : "");
+            return ResponseEntity.ok(stored.publicPath());
         } catch (IOException e) {
             log.error("Erreur upload photo : {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().body("Erreur lors de l'upload : " + e.getMessage());
         }
     }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) throws IOException {
+        photoUploadSessionService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
 }
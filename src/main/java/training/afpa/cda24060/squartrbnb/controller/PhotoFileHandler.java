@@ -0,0 +1,284 @@
+package training.afpa.cda24060.squartrbnb.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+import training.afpa.cda24060.squartrbnb.service.PhotoHotCache;
+import training.afpa.cda24060.squartrbnb.service.PhotoLayout;
+import training.afpa.cda24060.squartrbnb.service.PhotoStorageService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Service des photos uploadées : GET/HEAD /uploads/users/{fichier}
+ * et /uploads/users/variants/{taille}/{fichier}.
+ *
+ * Un fichier uploadé ne change jamais de contenu (nom unique, hash du contenu pour les
+ * nouveaux uploads) : il est servi avec un Cache-Control "immutable" d'un an et un ETag fort
+ * dérivé du SHA-256 du contenu (304 si If-None-Match correspond). Les requêtes Range à un
+ * seul intervalle sont prises en charge (206 / 416).
+ *
+ * Au-delà de app.photos.serving.sendfile-threshold, le corps est confié à Tomcat en sendfile
+ * (copie noyau, sans passer par la JVM) quand le connecteur le permet.
+ *
+ * En deçà (ou sans sendfile), les fichiers les plus demandés sont servis depuis la mémoire
+ * ({@link PhotoHotCache}).
+ *
+ * Les URL ne reflètent pas l'organisation sur disque : le fichier est cherché dans son
+ * sous-dossier puis, tant que la migration n'est pas terminée, à plat ({@link PhotoLayout}).
+ *
+ * Pas de variantes précompressées (gzip/br) : JPEG, PNG, GIF et WebP sont déjà compressés,
+ * le gain serait nul.
+ */
+@Component
+@Log4j2
+public class PhotoFileHandler implements HttpRequestHandler {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    /** Original servi à la place d'une variante pas encore générée : à revalider bientôt */
+    private static final String FALLBACK = "public, max-age=60";
+
+    private static final Pattern HASHED_NAME = Pattern.compile("([0-9a-f]{64})\\.[a-z0-9]{1,5}");
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final PhotoHotCache photoHotCache;
+    private final PhotoLayout photoLayout;
+    private final List<Integer> variantSizes;
+    private final long sendfileThreshold;
+
+    /** ETag des fichiers dont le nom n'est pas un hash (anciens uploads), par chemin + date + taille */
+    private final Cache<String, String> legacyEtags = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    public PhotoFileHandler(PhotoHotCache photoHotCache,
+                            PhotoLayout photoLayout,
+                            @Value("${app.photos.variants.sizes:48,128,512}") List<Integer> variantSizes,
+                            @Value("${app.photos.serving.sendfile-threshold:48KB}") DataSize sendfileThreshold) {
+        this.photoHotCache = photoHotCache;
+        this.photoLayout = photoLayout;
+        this.variantSizes = List.copyOf(variantSizes);
+        this.sendfileThreshold = sendfileThreshold.toBytes();
+    }
+
+    /**
+     * Fichier à servir, taille de la variante (null pour l'original), Cache-Control associé et
+     * contenu en mémoire s'il y est déjà.
+     */
+    private record Target(Path file, String filename, String variant, String cacheControl, PhotoHotCache.Entry hot) {
+    }
+
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        Target target = resolve(path);
+        if (target == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        PhotoHotCache.Entry hot = target.hot();
+        long length;
+        long lastModified;
+        if (hot != null) {
+            length = hot.size();
+            lastModified = hot.lastModified();
+        } else {
+            BasicFileAttributes attributes = Files.readAttributes(target.file(), BasicFileAttributes.class);
+            length = attributes.size();
+            lastModified = attributes.lastModifiedTime().toMillis();
+        }
+        String etag = etag(target, length, lastModified);
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, target.cacheControl());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(target.filename())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && rangeApplies(request.getHeader(HttpHeaders.IF_RANGE), etag)) {
+            Matcher m = SINGLE_RANGE.matcher(range.trim());
+            if (m.matches() && !(m.group(1).isEmpty() && m.group(2).isEmpty())) {
+                if (m.group(1).isEmpty()) {
+                    start = Math.max(0, length - parsePosition(m.group(2)));
+                } else {
+                    start = parsePosition(m.group(1));
+                    if (!m.group(2).isEmpty()) end = Math.min(end, parsePosition(m.group(2)));
+                }
+                if (start > end || start >= length) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+            // Plusieurs intervalles : non pris en charge, le fichier complet est renvoyé (RFC 9110)
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(method) || count == 0) return;
+
+        // Au-delà du seuil, le sendfile (copie noyau) l'emporte sur la mémoire
+        if (count >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, target.file().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        if (hot == null) {
+            // Seulement quand le corps est envoyé : ni 304, ni HEAD ne chargent le fichier
+            hot = photoHotCache.admit(target.file(), length, lastModified).orElse(null);
+        }
+        if (hot != null) {
+            ByteBuffer body = hot.slice(start, count);
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (body.hasRemaining()) {
+                out.write(body);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(target.file())) {
+            OutputStream out = response.getOutputStream();
+            channel.transferTo(start, count, Channels.newChannel(out));
+        }
+    }
+
+    /**
+     * "abc.jpg" → original ; "variants/128/abc.jpg" → variante, ou l'original (Cache-Control
+     * court) tant qu'elle n'existe pas. null si le chemin est invalide ou le fichier absent.
+     */
+    private Target resolve(String path) {
+        if (path == null || path.isEmpty()) return null;
+        String[] segments = path.split("/");
+        for (String segment : segments) {
+            // Pas de remontée de dossier ni de fichier caché (.part en cours d'écriture)
+            if (segment.isEmpty() || segment.startsWith(".")) return null;
+        }
+
+        if (segments.length == 1) {
+            return target(photoLayout.root(), segments[0], null, IMMUTABLE);
+        }
+        if (segments.length == 3 && segments[0].equals(PhotoLayout.VARIANTS_DIR)) {
+            Integer size = variantSize(segments[1]);
+            if (size == null) return null;
+            String filename = segments[2];
+            Target variant = target(photoLayout.variantsRoot(size), filename, segments[1], IMMUTABLE);
+            return variant != null ? variant : target(photoLayout.root(), filename, null, FALLBACK);
+        }
+        return null;
+    }
+
+    /**
+     * Premier emplacement possible du fichier sous {@code base} présent en mémoire (sans accès
+     * disque) ou, à défaut, sur disque.
+     */
+    private Target target(Path base, String filename, String variant, String cacheControl) {
+        List<Path> candidates = photoLayout.candidates(base, filename);
+        for (Path file : candidates) {
+            Optional<PhotoHotCache.Entry> hot = photoHotCache.get(file);
+            if (hot.isPresent()) return new Target(file, filename, variant, cacheControl, hot.get());
+        }
+        for (Path file : candidates) {
+            if (Files.isRegularFile(file)) return new Target(file, filename, variant, cacheControl, null);
+        }
+        return null;
+    }
+
+    private Integer variantSize(String segment) {
+        try {
+            Integer size = Integer.valueOf(segment);
+            return variantSizes.contains(size) ? size : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ETag fort : hash du nom pour les fichiers adressés par contenu (suffixé de la taille de
+     * la variante le cas échéant), SHA-256 calculé une fois et mis en cache pour les autres.
+     */
+    private String etag(Target target, long length, long lastModified) throws IOException {
+        Matcher hashed = HASHED_NAME.matcher(target.filename());
+        if (hashed.matches()) {
+            String variant = target.variant() == null ? "" : "-" + target.variant();
+            return "\"" + hashed.group(1) + variant + "\"";
+        }
+
+        String key = target.file() + "|" + lastModified + "|" + length;
+        String cached = legacyEtags.getIfPresent(key);
+        if (cached != null) return cached;
+
+        MessageDigest digest = PhotoStorageService.sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(target.file())) {
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        String etag = "\"" + HexFormat.of().formatHex(digest.digest()) + "\"";
+        legacyEtags.put(key, etag);
+        return etag;
+    }
+
+    /**
+     * Position d'un en-tête Range ; une valeur trop grande pour un long est ramenée à
+     * Long.MAX_VALUE (au-delà de tout fichier : 416, ou fichier entier pour un suffixe).
+     */
+    private static long parsePosition(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * If-Range : la plage ne s'applique que si le client a toujours la même version.
+     */
+    private static boolean rangeApplies(String ifRange, String etag) {
+        return ifRange == null || ifRange.equals(etag);
+    }
+}
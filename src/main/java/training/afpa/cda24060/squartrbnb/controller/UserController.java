@@ -1,16 +1,36 @@
 package training.afpa.cda24060.squartrbnb.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import training.afpa.cda24060.squartrbnb.dto.UserBatchRequestDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserBatchResponseDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserBulkDeleteResultDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserCreateDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserImportResultDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserPageDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserUpdateDTO;
+import training.afpa.cda24060.squartrbnb.service.UserExportService;
+import training.afpa.cda24060.squartrbnb.service.UserImportService;
 import training.afpa.cda24060.squartrbnb.service.UserService;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/users")
@@ -19,6 +39,23 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final UserExportService userExportService;
+    private final UserImportService userImportService;
+
+    @Value("${app.users.page.default-limit:20}")
+    private int defaultPageLimit;
+
+    @Value("${app.users.page.max-limit:100}")
+    private int maxPageLimit;
+
+    @Value("${app.users.all.max:1000}")
+    private int maxUnboundedUsers;
+
+    @Value("${app.users.bulk.max-ids:10000}")
+    private int maxBulkIds;
+
+    @Value("${app.users.batch.max-ids:1000}")
+    private int maxBatchIds;
 
     @PostMapping
     public ResponseEntity<UserResponseDTO> createUser(@Valid @RequestBody UserCreateDTO dto) {
@@ -26,10 +63,94 @@ public class UserController {
         return ResponseEntity.status(HttpStatus.CREATED).body(userService.createUser(dto));
     }
 
+    /**
+     * Liste paginée par curseur : GET /api/users?after={nextCursor}&limit=50
+     */
     @GetMapping
+    public ResponseEntity<UserPageDTO> getUsers(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        int effectiveLimit = limit == null ? defaultPageLimit : Math.clamp(limit, 1, maxPageLimit);
+        log.info("Récupération d'une page d'utilisateurs (limit={})", effectiveLimit);
+
+        UserPageDTO page = userService.getUsersPage(after, effectiveLimit);
+        if (page.getNextCursor() != null) {
+            page.setNext(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.getNextCursor())
+                    .replaceQueryParam("limit", effectiveLimit)
+                    .toUriString());
+        }
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Ancienne liste complète, désormais derrière un paramètre explicite et plafonnée
+     * (app.users.all.max) : GET /api/users?all=true
+     */
+    @GetMapping(params = "all=true")
     public ResponseEntity<List<UserResponseDTO>> getAllUsers() {
-        log.info("Récupération de tous les utilisateurs");
-        return ResponseEntity.ok(userService.getAllUsers());
+        log.info("Récupération de tous les utilisateurs (max={})", maxUnboundedUsers);
+        return ResponseEntity.ok(userService.getAllUsers(maxUnboundedUsers));
+    }
+
+    /**
+     * Export complet en flux : GET /api/users/export?format=ndjson|csv
+     * Les lignes sont écrites au fil de l'eau, la mémoire reste constante.
+     */
+    @GetMapping("/export")
+    public void exportUsers(@RequestParam(defaultValue = "ndjson") String format,
+                            HttpServletResponse response) throws IOException {
+        UserExportService.Format exportFormat = UserExportService.Format.parse(format);
+        log.info("Export des utilisateurs ({})", exportFormat);
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"users." + exportFormat.name().toLowerCase(Locale.ROOT) + "\"");
+
+        try (OutputStream out = new BufferedOutputStream(response.getOutputStream(), 64 * 1024)) {
+            userExportService.export(exportFormat, out);
+        }
+    }
+
+    /**
+     * Import en masse : POST /api/users/import (tableau JSON ou CSV avec ligne d'en-tête)
+     * Le corps est lu en flux ; le résultat détaille chaque ligne (créée ou en erreur).
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public ResponseEntity<UserImportResultDTO> importUsers(HttpServletRequest request) throws IOException {
+        UserImportService.Format format = request.getContentType().startsWith("text/csv")
+                ? UserImportService.Format.CSV
+                : UserImportService.Format.JSON;
+        try (InputStream in = request.getInputStream()) {
+            return ResponseEntity.ok(userImportService.importUsers(in, format));
+        }
+    }
+
+    /**
+     * Lecture groupée : GET /api/users/batch?ids=1,2,3
+     * Les utilisateurs sont renvoyés dans l'ordre demandé, les ids inexistants dans "missing".
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<UserBatchResponseDTO> getUsersByIds(@RequestParam List<Integer> ids) {
+        checkBatchSize(ids.size());
+        log.info("Lecture groupée de {} utilisateur(s)", ids.size());
+        return ResponseEntity.ok(userService.getUsersByIds(ids));
+    }
+
+    /**
+     * Variante POST pour les listes trop longues pour une URL : body {"ids": [1, 2, 3]}
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<UserBatchResponseDTO> getUsersByIds(@Valid @RequestBody UserBatchRequestDTO request) {
+        checkBatchSize(request.getIds().size());
+        log.info("Lecture groupée de {} utilisateur(s)", request.getIds().size());
+        return ResponseEntity.ok(userService.getUsersByIds(request.getIds()));
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > maxBatchIds) {
+            throw new IllegalArgumentException("Trop d'ids (" + size + "), maximum " + maxBatchIds + " par requête.");
+        }
     }
 
     @GetMapping("/{id}")
@@ -57,10 +178,34 @@ public class UserController {
         return ResponseEntity.ok(userService.updateUser(id, dto));
     }
 
+    /**
+     * Mise à jour partielle : seules les colonnes fournies sont écrites, en un seul UPDATE.
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patchUser(@PathVariable Integer id,
+                                          @Valid @RequestBody UserUpdateDTO dto) {
+        log.info("Mise à jour partielle de l'utilisateur id={}", id);
+        userService.patchUser(id, dto);
+        return ResponseEntity.noContent().build();
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable Integer id) {
         log.info("Suppression de l'utilisateur id={}", id);
         userService.deleteUser(id);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Suppression groupée : DELETE /api/users?ids=1,2,3
+     * Retourne les ids supprimés et ceux qui n'existaient pas.
+     */
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<UserBulkDeleteResultDTO> deleteUsers(@RequestParam List<Integer> ids) {
+        if (ids.size() > maxBulkIds) {
+            throw new IllegalArgumentException("Trop d'ids (" + ids.size() + "), maximum " + maxBulkIds + " par requête.");
+        }
+        log.info("Suppression groupée de {} utilisateur(s)", ids.size());
+        return ResponseEntity.ok(userService.deleteUsers(ids));
+    }
 }
\ No newline at end of file
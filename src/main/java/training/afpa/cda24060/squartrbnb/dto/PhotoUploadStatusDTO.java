@@ -0,0 +1,37 @@
+package training.afpa.cda24060.squartrbnb.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * État d'un upload de photo par morceaux : ce que le client doit (encore) envoyer.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PhotoUploadStatusDTO {
+
+    private String uploadId;
+    /** Taille totale annoncée, en octets */
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+    /** Plages d'octets déjà reçues, fusionnées (bornes incluses) */
+    private List<Range> received;
+    /** Numéros (à partir de 0) des morceaux manquants */
+    private List<Integer> missingChunks;
+    private boolean complete;
+    /** Expiration de la session sans nouvelle activité */
+    private Instant expiresAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Range {
+        private long start;
+        private long end;
+    }
+}
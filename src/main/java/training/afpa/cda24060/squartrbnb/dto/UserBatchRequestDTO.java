@@ -0,0 +1,16 @@
+package training.afpa.cda24060.squartrbnb.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserBatchRequestDTO {
+
+    @NotEmpty
+    private List<Integer> ids;
+}
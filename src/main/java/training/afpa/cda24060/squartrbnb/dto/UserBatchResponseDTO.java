@@ -0,0 +1,19 @@
+package training.afpa.cda24060.squartrbnb.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Résultat d'une lecture groupée : utilisateurs trouvés (dans l'ordre de la demande)
+ * et ids inexistants.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserBatchResponseDTO {
+
+    private List<UserResponseDTO> users;
+    private List<Integer> missing;
+}
@@ -0,0 +1,18 @@
+package training.afpa.cda24060.squartrbnb.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Résultat d'une suppression groupée : ids effectivement supprimés et ids inexistants.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserBulkDeleteResultDTO {
+
+    private List<Integer> deleted;
+    private List<Integer> missing;
+}
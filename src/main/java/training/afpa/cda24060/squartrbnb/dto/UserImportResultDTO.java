@@ -0,0 +1,35 @@
+package training.afpa.cda24060.squartrbnb.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Résultat d'un import en masse : compteurs globaux + résultat ligne par ligne.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserImportResultDTO {
+
+    private int total;
+    private int created;
+    private int failed;
+    private List<RowResult> rows;
+
+    /** RETRY : ligne valide non traitée (service saturé), à renvoyer telle quelle */
+    public enum Status { CREATED, FAILED, RETRY }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RowResult {
+        /** Numéro de ligne dans le fichier (1 = premier utilisateur) */
+        private int row;
+        private Status status;
+        private Integer id;
+        private String error;
+    }
+}
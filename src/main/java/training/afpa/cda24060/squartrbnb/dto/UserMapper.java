@@ -5,6 +5,9 @@ import org.springframework.stereotype.Component;
 import training.afpa.cda24060.squartrbnb.entity.Role;
 import training.afpa.cda24060.squartrbnb.entity.User;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Component
 public class UserMapper {
 
@@ -56,4 +59,19 @@ public class UserMapper {
         if (dto.getDateNaissance() != null) user.setDateNaissance(dto.getDateNaissance());
         if (dto.getPhotoPath() != null)    user.setPhotoPath(dto.getPhotoPath());
     }
+
+    /**
+     * Champs simples renseignés dans le DTO, indexés par nom d'attribut de {@link User},
+     * pour un UPDATE partiel. Le mot de passe et le rôle sont traités par le service.
+     */
+    public Map<String, Object> toPatchChanges(UserUpdateDTO dto) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if (dto.getUsername() != null)     changes.put("username", dto.getUsername());
+        if (dto.getNom() != null)          changes.put("nom", dto.getNom());
+        if (dto.getPrenom() != null)       changes.put("prenom", dto.getPrenom());
+        if (dto.getEmail() != null)        changes.put("email", dto.getEmail());
+        if (dto.getDateNaissance() != null) changes.put("dateNaissance", dto.getDateNaissance());
+        if (dto.getPhotoPath() != null)    changes.put("photoPath", dto.getPhotoPath());
+        return changes;
+    }
 }
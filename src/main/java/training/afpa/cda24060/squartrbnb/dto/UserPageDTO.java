@@ -0,0 +1,25 @@
+package training.afpa.cda24060.squartrbnb.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Page d'utilisateurs paginée par curseur (keyset).
+ *
+ * {@code nextCursor} est un jeton opaque à renvoyer tel quel dans le paramètre {@code after} ;
+ * il vaut {@code null} (et n'est donc pas sérialisé) sur la dernière page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserPageDTO {
+
+    private List<UserResponseDTO> content;
+    private int limit;
+    private String nextCursor;
+
+    /** Lien complet vers la page suivante (renseigné par le contrôleur) */
+    private String next;
+}
@@ -23,6 +23,16 @@ public class UserResponseDTO {
     private String photoPath;
     private RoleResponseDTO role;
 
+    /**
+     * Constructeur utilisé par les projections JPQL ({@code select new ...}) de UserRepository :
+     * le rôle arrive à plat (id, nom) car JPQL ne permet pas d'imbriquer les constructeurs.
+     */
+    public UserResponseDTO(Integer id, String username, String nom, String prenom, String email,
+                           LocalDate dateNaissance, String photoPath, Integer roleId, String roleName) {
+        this(id, username, nom, prenom, email, dateNaissance, photoPath,
+                roleId != null ? new RoleResponseDTO(roleId, roleName) : null);
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -12,16 +12,23 @@ import java.time.LocalDate;
 @Builder
 public class UserUpdateDTO {
 
+    /** Champ absent (null) : inchangé ; présent : jamais vide, comme le @NotBlank de User */
+    private static final String NOT_BLANK = "(?s).*\\S.*";
+
     @Size(min = 3, max = 50)
+    @Pattern(regexp = NOT_BLANK, message = "ne doit pas être vide")
     private String username;
 
     @Size(max = 100)
+    @Pattern(regexp = NOT_BLANK, message = "ne doit pas être vide")
     private String nom;
 
     @Size(max = 100)
+    @Pattern(regexp = NOT_BLANK, message = "ne doit pas être vide")
     private String prenom;
 
     @Email
+    @Pattern(regexp = NOT_BLANK, message = "ne doit pas être vide")
     private String email;
 
     @Past
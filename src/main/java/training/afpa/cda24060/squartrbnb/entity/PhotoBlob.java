@@ -0,0 +1,41 @@
+package training.afpa.cda24060.squartrbnb.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Fichier photo stocké une seule fois sur disque, identifié par le SHA-256 de son contenu.
+ * {@code refCount} est le nombre d'utilisateurs dont photo_path désigne ce contenu, recalé
+ * par le {@link training.afpa.cda24060.squartrbnb.service.PhotoReconciliationService} : 0 à
+ * l'insertion (l'upload n'est pas encore rattaché), inchangé quand un upload réutilise le contenu.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "photo_blobs")
+public class PhotoBlob {
+
+    /** SHA-256 du contenu, en hexadécimal */
+    @Id
+    @Column(name = "hash", length = 64)
+    String hash;
+
+    /** Nom du fichier dans app.upload.dir : hash + extension */
+    @Column(name = "filename", nullable = false)
+    String filename;
+
+    @Column(name = "size_bytes", nullable = false)
+    long size;
+
+    @Column(name = "ref_count", nullable = false)
+    int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    Instant createdAt;
+}
@@ -0,0 +1,46 @@
+package training.afpa.cda24060.squartrbnb.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Génération des variantes redimensionnées d'une photo, persistée pour survivre à un redémarrage.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "photo_variant_jobs", indexes = @Index(name = "idx_photo_variant_jobs_status", columnList = "status, id"))
+public class PhotoVariantJob {
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    /** Fichier original dans app.upload.dir */
+    @Column(name = "filename", nullable = false)
+    String filename;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    Status status;
+
+    @Column(name = "attempts", nullable = false)
+    int attempts;
+
+    @Column(name = "last_error", length = 500)
+    String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    Instant updatedAt;
+}
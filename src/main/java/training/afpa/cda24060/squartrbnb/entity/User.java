@@ -15,14 +15,21 @@ import java.time.LocalDate;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = User.UK_EMAIL, columnNames = "email"),
+        @UniqueConstraint(name = User.UK_USERNAME, columnNames = "username")
+})
 public class User {
 
+    /** Noms des contraintes d'unicité, utilisés pour identifier le champ en conflit */
+    public static final String UK_EMAIL = "uk_users_email";
+    public static final String UK_USERNAME = "uk_users_username";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     Integer id;
 
-    @Column(name = "username", nullable = false, unique = true)
+    @Column(name = "username", nullable = false)
     @NotBlank
     @Size(min = 3, max = 50)
     String username;
@@ -37,7 +44,7 @@ public class User {
     @Size(max = 100)
     String prenom;
 
-    @Column(name = "email", nullable = false, unique = true)
+    @Column(name = "email", nullable = false)
     @NotBlank
     @Email
     String email;
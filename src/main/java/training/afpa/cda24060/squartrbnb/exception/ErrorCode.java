@@ -26,7 +26,10 @@ public enum ErrorCode {
 
     // ── Serveur (500) ─────────────────────────────────────────────────────
     INTERNAL_ERROR("ERR_INTERNAL", "Erreur interne du serveur"),
-    DATABASE_ERROR("ERR_DATABASE", "Erreur de base de données");
+    DATABASE_ERROR("ERR_DATABASE", "Erreur de base de données"),
+
+    // ── Indisponible (503) ────────────────────────────────────────────────
+    SERVICE_UNAVAILABLE("ERR_UNAVAILABLE", "Service temporairement indisponible");
 
     private final String code;
     private final String defaultMessage;
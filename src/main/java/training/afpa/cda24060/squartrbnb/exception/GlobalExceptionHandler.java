@@ -5,6 +5,7 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -191,6 +192,31 @@ public class GlobalExceptionHandler {
                 "Une contrainte d'intégrité a été violée (doublon ou référence invalide).", request);
     }
 
+    // ════════════════════════════════════════════════════════════════════════
+    // 503 – SERVICE UNAVAILABLE
+    // ════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Surcharge temporaire (délai d'attente dépassé, file pleine, etc.) : le client peut réessayer.
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleUnavailable(ServiceUnavailableException ex,
+                                                           WebRequest request) {
+        log.warn("Service indisponible: {}", ex.getMessage());
+        return build(HttpStatus.SERVICE_UNAVAILABLE, ErrorCode.SERVICE_UNAVAILABLE, ex.getMessage(), request);
+    }
+
+    /**
+     * Aucune connexion obtenue à temps (pool ou plafond d'accès à la base saturé).
+     */
+    @ExceptionHandler(CannotCreateTransactionException.class)
+    public ResponseEntity<ErrorResponse> handleNoConnection(CannotCreateTransactionException ex,
+                                                            WebRequest request) {
+        log.warn("Connexion à la base indisponible: {}", ex.getMostSpecificCause().getMessage());
+        return build(HttpStatus.SERVICE_UNAVAILABLE, ErrorCode.SERVICE_UNAVAILABLE,
+                "Service momentanément saturé, veuillez réessayer.", request);
+    }
+
     // ════════════════════════════════════════════════════════════════════════
     // 500 – INTERNAL SERVER ERROR
     // ════════════════════════════════════════════════════════════════════════
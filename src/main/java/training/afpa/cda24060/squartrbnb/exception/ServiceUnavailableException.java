@@ -0,0 +1,7 @@
+package training.afpa.cda24060.squartrbnb.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,42 @@
+package training.afpa.cda24060.squartrbnb.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import training.afpa.cda24060.squartrbnb.entity.PhotoBlob;
+
+import java.time.Instant;
+
+@Repository
+public interface PhotoBlobRepository extends JpaRepository<PhotoBlob, String> {
+
+    /** Rapprochement : nombre réel d'utilisateurs qui référencent ce contenu */
+    @Transactional
+    @Modifying
+    @Query("update PhotoBlob p set p.refCount = :refCount where p.hash = :hash and p.refCount <> :refCount")
+    int updateRefCount(String hash, int refCount);
+
+    /**
+     * Rapprochement : suppression d'un contenu orphelin (DELETE direct, sans SELECT préalable),
+     * sous le verrou du contenu ({@link training.afpa.cda24060.squartrbnb.service.PhotoContentLocks}).
+     *
+     * @return 0 si la ligne n'existait pas
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from PhotoBlob p where p.hash = :hash")
+    int deleteByHash(String hash);
+
+    /**
+     * Enregistrement d'un nouveau contenu (INSERT direct, sans SELECT préalable de merge),
+     * sans utilisateur rattaché. Deux uploads simultanés du même contenu : le second échoue
+     * sur la clé primaire et réutilise le contenu publié par le premier.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into photo_blobs (hash, filename, size_bytes, ref_count, created_at) "
+            + "values (:hash, :filename, :size, 0, :createdAt)", nativeQuery = true)
+    int insert(String hash, String filename, long size, Instant createdAt);
+}
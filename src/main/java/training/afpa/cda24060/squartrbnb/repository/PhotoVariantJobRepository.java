@@ -0,0 +1,69 @@
+package training.afpa.cda24060.squartrbnb.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import training.afpa.cda24060.squartrbnb.entity.PhotoVariantJob;
+import training.afpa.cda24060.squartrbnb.entity.PhotoVariantJob.Status;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface PhotoVariantJobRepository extends JpaRepository<PhotoVariantJob, Long> {
+
+    @Query("select j.id from PhotoVariantJob j where j.status = :status order by j.id")
+    List<Long> findIdsByStatus(Status status, Limit limit);
+
+    long countByStatus(Status status);
+
+    /**
+     * Réservation d'une tâche : ne réussit que si elle est encore en attente, ce qui évite
+     * qu'une tâche soit traitée deux fois.
+     *
+     * @return 1 si la tâche a été réservée
+     */
+    default int claim(Long id, Instant now) {
+        return transition(id, Status.PENDING, Status.RUNNING, now);
+    }
+
+    @Transactional
+    @Modifying
+    @Query("update PhotoVariantJob j set j.status = :to, j.attempts = j.attempts + 1, j.updatedAt = :now "
+            + "where j.id = :id and j.status = :from")
+    int transition(Long id, Status from, Status to, Instant now);
+
+    /**
+     * Réservation annulée sans traitement (pool saturé) : la tâche repasse en attente et la
+     * tentative comptée par {@link #claim(Long, Instant)} est retirée.
+     */
+    default int release(Long id, Instant now) {
+        return cancel(id, Status.RUNNING, Status.PENDING, now);
+    }
+
+    @Transactional
+    @Modifying
+    @Query("update PhotoVariantJob j set j.status = :to, j.attempts = j.attempts - 1, j.updatedAt = :now "
+            + "where j.id = :id and j.status = :from")
+    int cancel(Long id, Status from, Status to, Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update PhotoVariantJob j set j.status = :status, j.lastError = :error, j.updatedAt = :now where j.id = :id")
+    int finish(Long id, Status status, String error, Instant now);
+
+    /**
+     * Au démarrage : les tâches interrompues par un arrêt repassent en attente.
+     */
+    default int requeueRunning(Instant now) {
+        return updateAllStatus(Status.RUNNING, Status.PENDING, now);
+    }
+
+    @Transactional
+    @Modifying
+    @Query("update PhotoVariantJob j set j.status = :to, j.updatedAt = :now where j.status = :from")
+    int updateAllStatus(Status from, Status to, Instant now);
+}
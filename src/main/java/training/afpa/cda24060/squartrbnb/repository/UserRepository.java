@@ -1,15 +1,93 @@
 package training.afpa.cda24060.squartrbnb.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
 import training.afpa.cda24060.squartrbnb.entity.User;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Integer> {
+public interface UserRepository extends JpaRepository<User, Integer>, UserRepositoryCustom {
+
+    /**
+     * Projection de lecture : uniquement les colonnes exposées par l'API, rôle joint dans la
+     * même requête. Pas d'entité managée, pas de snapshot de dirty-checking, et les colonnes
+     * password_hash / remember_token ne sont jamais lues.
+     */
+    String VIEW_SELECT = "select new training.afpa.cda24060.squartrbnb.dto.UserResponseDTO("
+            + "u.id, u.username, u.nom, u.prenom, u.email, u.dateNaissance, u.photoPath, r.id, r.name) "
+            + "from User u join u.role r ";
+
     boolean existsByEmail(String email);
     boolean existsByUsername(String username);
+    boolean existsByEmailAndIdNot(String email, Integer id);
+    boolean existsByUsernameAndIdNot(String username, Integer id);
     Optional<User> findByEmail(String email);
     Optional<User> findByUsername(String username);
+
+    @Query(VIEW_SELECT + "where u.id = :id")
+    Optional<UserResponseDTO> findViewById(Integer id);
+
+    @Query(VIEW_SELECT + "where u.email = :email")
+    Optional<UserResponseDTO> findViewByEmail(String email);
+
+    @Query(VIEW_SELECT + "where u.username = :username")
+    Optional<UserResponseDTO> findViewByUsername(String username);
+
+    /**
+     * Pagination keyset : parcours de l'index primaire à partir de {@code afterId} (exclu).
+     * Le coût est identique quelle que soit la page, aucun OFFSET n'est généré.
+     */
+    @Query(VIEW_SELECT + "where u.id > :afterId order by u.id")
+    List<UserResponseDTO> findViewsAfter(Integer afterId, Limit limit);
+
+    @Query(VIEW_SELECT + "where u.id in :ids")
+    List<UserResponseDTO> findViewsByIdIn(Collection<Integer> ids);
+
+    @Query("select u.id from User u where u.id in :ids")
+    List<Integer> findExistingIds(Collection<Integer> ids);
+
+    /** Pré-contrôle d'unicité d'un lot d'import : une requête pour tout le lot */
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(Collection<String> emails);
+
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(Collection<String> usernames);
+
+    /** Nombre d'utilisateurs par photo, pour le rapprochement fichiers / base */
+    interface PhotoPathCount {
+        String getPhotoPath();
+        long getUsers();
+    }
+
+    @Query("select u.photoPath as photoPath, count(u) as users from User u "
+            + "where u.photoPath in :paths group by u.photoPath")
+    List<PhotoPathCount> countByPhotoPathIn(Collection<String> paths);
+
+    /**
+     * Utilisateurs dont photo_path désigne ce fichier, quelle que soit la forme du chemin
+     * (relatif, "/uploads/…", URL absolue) : comparaison sur le dernier segment.
+     */
+    @Query("select count(u) from User u "
+            + "where u.photoPath = :filename or u.photoPath like concat('%/', :filename)")
+    long countByPhotoFilename(String filename);
+
+    /**
+     * DELETE direct, sans lecture préalable de l'entité (contrairement à deleteById).
+     *
+     * @return le nombre de lignes supprimées
+     */
+    @Modifying
+    @Query("delete from User u where u.id = :id")
+    int removeById(Integer id);
+
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int removeAllByIdIn(Collection<Integer> ids);
 }
@@ -0,0 +1,17 @@
+package training.afpa.cda24060.squartrbnb.repository;
+
+import java.util.Map;
+
+/**
+ * Requêtes de UserRepository écrites à la main (implémentation : {@link UserRepositoryImpl}).
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * UPDATE users SET &lt;colonnes fournies uniquement&gt; WHERE id = ?, sans charger l'entité.
+     *
+     * @param changes attribut JPA de {@code User} → nouvelle valeur
+     * @return le nombre de lignes modifiées (0 si l'utilisateur n'existe pas)
+     */
+    int updateColumns(Integer id, Map<String, Object> changes);
+}
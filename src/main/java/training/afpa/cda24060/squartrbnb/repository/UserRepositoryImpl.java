@@ -0,0 +1,31 @@
+package training.afpa.cda24060.squartrbnb.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import training.afpa.cda24060.squartrbnb.entity.User;
+
+import java.util.Map;
+
+class UserRepositoryImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateColumns(Integer id, Map<String, Object> changes) {
+        if (changes.isEmpty()) {
+            throw new IllegalArgumentException("Aucune colonne à mettre à jour");
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<User> update = cb.createCriteriaUpdate(User.class);
+        Root<User> root = update.from(User.class);
+        changes.forEach((attribute, value) -> update.set(root.get(attribute), value));
+        update.where(cb.equal(root.get("id"), id));
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+}
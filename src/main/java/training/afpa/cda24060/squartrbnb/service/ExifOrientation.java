@@ -0,0 +1,126 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Orientation EXIF (tag 0x0112) d'un JPEG. Les appareils enregistrent les pixels dans le sens
+ * du capteur et indiquent la rotation à appliquer à l'affichage ; les variantes étant
+ * réencodées sans métadonnées, cette rotation doit être appliquée aux pixels.
+ *
+ * Seul le segment APP1 du début de fichier est lu, sans dépendance externe.
+ */
+final class ExifOrientation {
+
+    static final int NORMAL = 1;
+
+    private static final int MAX_HEADER = 128 * 1024;
+    private static final byte[] EXIF = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ExifOrientation() {
+    }
+
+    /** Orientation (1 à 8) du fichier JPEG, {@link #NORMAL} si absente ou illisible */
+    static int read(Path jpeg) throws IOException {
+        try (InputStream in = Files.newInputStream(jpeg)) {
+            return parse(in.readNBytes(MAX_HEADER));
+        }
+    }
+
+    static int parse(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) return NORMAL;
+        int pos = 2;
+        while (pos + 4 <= data.length) {
+            if ((data[pos] & 0xFF) != 0xFF) return NORMAL;
+            int marker = data[pos + 1] & 0xFF;
+            if (marker == 0xFF) { // octet de bourrage
+                pos++;
+                continue;
+            }
+            // Début des données compressées : plus de métadonnées au-delà
+            if (marker == 0xDA || marker == 0xD9) return NORMAL;
+            int length = ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+            if (length < 2) return NORMAL;
+            if (marker == 0xE1 && startsWith(data, pos + 4, EXIF)) {
+                int start = pos + 4 + EXIF.length;
+                return tiff(data, start, Math.min(data.length, pos + 2 + length));
+            }
+            pos += 2 + length;
+        }
+        return NORMAL;
+    }
+
+    /** Recherche du tag dans le premier IFD de l'en-tête TIFF de l'EXIF */
+    private static int tiff(byte[] data, int start, int end) {
+        if (end - start < 8) return NORMAL;
+        ByteOrder order;
+        if (data[start] == 'I' && data[start + 1] == 'I') order = ByteOrder.LITTLE_ENDIAN;
+        else if (data[start] == 'M' && data[start + 1] == 'M') order = ByteOrder.BIG_ENDIAN;
+        else return NORMAL;
+
+        ByteBuffer tiff = ByteBuffer.wrap(data, start, end - start).slice().order(order);
+        if (tiff.getShort(2) != 42) return NORMAL;
+        long ifd = tiff.getInt(4) & 0xFFFFFFFFL;
+        if (ifd + 2 > tiff.limit()) return NORMAL;
+
+        int entries = tiff.getShort((int) ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > tiff.limit()) return NORMAL;
+            if ((tiff.getShort(entry) & 0xFFFF) == ORIENTATION_TAG) {
+                // Type SHORT : valeur dans les deux premiers octets du champ valeur
+                int value = tiff.getShort(entry + 8) & 0xFFFF;
+                return value >= 1 && value <= 8 ? value : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Image redressée selon l'orientation : rotations par quarts de tour et miroirs, exacts
+     * pixel à pixel. Les orientations 5 à 8 échangent largeur et hauteur.
+     */
+    static BufferedImage apply(BufferedImage image, int orientation) {
+        if (orientation <= NORMAL || orientation > 8) return image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        // x' = m00·x + m01·y + m02 ; y' = m10·x + m11·y + m12
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // miroir horizontal
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // demi-tour
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // miroir vertical
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // transposition
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // quart de tour horaire
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // transposition inverse
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);  // quart de tour antihoraire
+        };
+        boolean swap = orientation >= 5;
+
+        BufferedImage target = new BufferedImage(swap ? h : w, swap ? w : h,
+                image.getType() == BufferedImage.TYPE_CUSTOM ? BufferedImage.TYPE_INT_ARGB : image.getType());
+        Graphics2D g = target.createGraphics();
+        try {
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        if (offset + prefix.length > data.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+}
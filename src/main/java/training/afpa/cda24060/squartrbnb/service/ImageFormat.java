@@ -0,0 +1,52 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Formats d'image acceptés, reconnus à leur signature (premiers octets du fichier) plutôt
+ * qu'au Content-Type déclaré par le client.
+ */
+public enum ImageFormat {
+
+    JPEG(".jpg"),
+    PNG(".png"),
+    GIF(".gif"),
+    WEBP(".webp");
+
+    /** Nombre d'octets nécessaires à {@link #detect(byte[], int)} */
+    public static final int SIGNATURE_LENGTH = 12;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final String extension;
+
+    ImageFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public static Optional<ImageFormat> detect(byte[] header, int length) {
+        if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return Optional.of(JPEG);
+        }
+        if (length >= 8 && Arrays.equals(header, 0, 8, PNG_SIGNATURE, 0, 8)) {
+            return Optional.of(PNG);
+        }
+        if (length >= 6 && (ascii(header, 0, 6).equals("GIF87a") || ascii(header, 0, 6).equals("GIF89a"))) {
+            return Optional.of(GIF);
+        }
+        if (length >= 12 && ascii(header, 0, 4).equals("RIFF") && ascii(header, 8, 4).equals("WEBP")) {
+            return Optional.of(WEBP);
+        }
+        return Optional.empty();
+    }
+
+    private static String ascii(byte[] bytes, int offset, int length) {
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,162 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import training.afpa.cda24060.squartrbnb.exception.ServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hachage des mots de passe sur un pool dédié, dimensionné sur les CPU.
+ *
+ * Un hachage BCrypt coûte ~100 ms de CPU : il est fait ici, avant l'ouverture de la
+ * transaction, pour qu'aucune connexion Hikari ne soit retenue pendant le calcul.
+ * La file d'attente est bornée ; quand elle est pleine, la demande est refusée
+ * immédiatement (503) plutôt que d'accumuler des requêtes en attente.
+ *
+ * Métriques : password.hashing.queue (tâches en attente), password.hashing.active,
+ * password.hashing.duration (attente + calcul) et password.hashing.rejected.
+ */
+@Service
+@Log4j2
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final Timer hashTimer;
+    private final Counter rejected;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.security.hashing.threads:0}") int threads,
+                                  @Value("${app.security.hashing.queue-capacity:200}") int queueCapacity,
+                                  @Value("${app.security.hashing.timeout:PT10S}") Duration timeout) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.passwordEncoder = passwordEncoder;
+        this.timeout = timeout;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("password.hashing.queue", executor, e -> e.getQueue().size())
+                .description("Hachages en attente d'un thread")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hachages en cours")
+                .register(meterRegistry);
+        this.hashTimer = Timer.builder("password.hashing.duration")
+                .description("Durée d'un hachage, attente dans la file comprise")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("password.hashing.rejected")
+                .description("Hachages refusés, file pleine")
+                .register(meterRegistry);
+
+        log.info("Pool de hachage des mots de passe : {} thread(s), file de {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * Hache un mot de passe sur le pool dédié (bloque l'appelant jusqu'au résultat).
+     *
+     * @throws ServiceUnavailableException si la file est pleine ou le délai dépassé
+     */
+    public String hash(String rawPassword) {
+        return await(submit(rawPassword));
+    }
+
+    /**
+     * Hache plusieurs mots de passe en parallèle ; l'ordre des résultats suit celui des entrées.
+     * Les tâches sont soumises par vagues de la taille du pool, pour ne pas saturer la file
+     * partagée avec les inscriptions.
+     */
+    public List<String> hashAll(List<String> rawPasswords) {
+        int window = executor.getMaximumPoolSize();
+        List<String> hashes = new ArrayList<>(rawPasswords.size());
+        for (int from = 0; from < rawPasswords.size(); from += window) {
+            List<Future<String>> futures = new ArrayList<>(window);
+            try {
+                for (String raw : rawPasswords.subList(from, Math.min(from + window, rawPasswords.size()))) {
+                    futures.add(submit(raw));
+                }
+                for (Future<String> future : futures) {
+                    hashes.add(await(future));
+                }
+            } finally {
+                futures.forEach(f -> f.cancel(false));
+            }
+        }
+        return hashes;
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return passwordEncoder.matches(rawPassword, encodedPassword);
+    }
+
+    /**
+     * Vrai si le hash a été calculé avec un coût inférieur à celui configuré
+     * (app.security.bcrypt.strength) : il doit être recalculé à la prochaine connexion réussie.
+     */
+    public boolean needsUpgrade(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private Future<String> submit(String rawPassword) {
+        long queuedAt = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                String hash = passwordEncoder.encode(rawPassword);
+                hashTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return hash;
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Hachage refusé : file pleine ({} en attente)", executor.getQueue().size());
+            throw new ServiceUnavailableException("Trop de demandes en cours, veuillez réessayer.");
+        }
+    }
+
+    private String await(Future<String> future) {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ServiceUnavailableException("Délai de hachage dépassé, veuillez réessayer.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new ServiceUnavailableException("Hachage interrompu.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Échec du hachage du mot de passe", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,45 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Verrous par contenu photo (hash, ou nom de fichier pour les anciens fichiers), partagés
+ * entre {@link PhotoStorageService} et {@link PhotoReconciliationService} : la réutilisation
+ * d'un contenu déjà stocké ne s'entrelace pas avec la mise à l'écart de ce même contenu jugé
+ * orphelin.
+ *
+ * Les clés sont réparties sur un nombre fixe de {@link ReentrantLock} (pas de
+ * {@code synchronized}, qui bloquerait le thread porteur des threads virtuels).
+ */
+@Component
+public class PhotoContentLocks {
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public PhotoContentLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @FunctionalInterface
+    public interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+
+    /** Exécute {@code action} en tenant le verrou de {@code key} (réentrant) */
+    public <T> T withLock(String key, IOSupplier<T> action) throws IOException {
+        ReentrantLock lock = locks[Math.floorMod(key.hashCode(), STRIPES)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
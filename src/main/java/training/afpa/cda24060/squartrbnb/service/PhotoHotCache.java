@@ -0,0 +1,155 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Niveau mémoire des photos les plus demandées (avatars de la page d'accueil…).
+ *
+ * Le contenu des fichiers jusqu'à app.photos.hot-cache.max-file-size est copié hors tas
+ * (ByteBuffer direct), dans la limite d'un budget total en octets (app.photos.hot-cache.budget).
+ * La politique d'éviction de Caffeine (W-TinyLFU) garde les fichiers les plus fréquemment lus.
+ *
+ * Un fichier n'est chargé qu'à sa deuxième lecture dans app.photos.hot-cache.admission-window,
+ * la première étant servie depuis le disque : un parcours à froid de nombreuses photos n'alloue
+ * pas de mémoire hors tas pour des fichiers qui ne seront pas relus.
+ *
+ * Le disque reste la référence : une entrée est revérifiée (taille + date de modification)
+ * au plus tard app.photos.hot-cache.revalidate-after après sa dernière vérification ; un fichier
+ * remplacé ou supprimé sort alors du cache. {@link #invalidate(Path)} l'en retire aussitôt.
+ *
+ * Pas de mmap : un fichier mappé ne peut pas être supprimé sous Windows tant que le mapping
+ * n'est pas libéré par le GC, ce qui bloquerait la suppression des fichiers orphelins.
+ *
+ * Métriques : cache.gets / cache.evictions (cache="photos.hot"), photos.hot.resident.bytes.
+ */
+@Component
+public class PhotoHotCache {
+
+    /**
+     * Contenu en mémoire d'un fichier, avec la taille et la date vérifiées pour la dernière
+     * fois à {@code checkedAt} (System.nanoTime).
+     */
+    public record Entry(ByteBuffer content, long size, long lastModified, long checkedAt) {
+
+        /** Vue (indépendante, lecture seule) sur les octets [start, start + count[ */
+        public ByteBuffer slice(long start, long count) {
+            return content.slice((int) start, (int) count);
+        }
+
+        Entry checkedNow() {
+            return new Entry(content, size, lastModified, System.nanoTime());
+        }
+    }
+
+    private final Cache<Path, Entry> cache;
+    /** Fichiers lus une fois depuis le disque dans la fenêtre d'admission */
+    private final Cache<Path, Boolean> seenOnce;
+    private final PhotoMetrics photoMetrics;
+    private final long maxFileSize;
+    private final long revalidateNanos;
+
+    public PhotoHotCache(MeterRegistry meterRegistry,
+                         PhotoMetrics photoMetrics,
+                         @Value("${app.photos.hot-cache.budget:64MB}") DataSize budget,
+                         @Value("${app.photos.hot-cache.max-file-size:512KB}") DataSize maxFileSize,
+                         @Value("${app.photos.hot-cache.revalidate-after:PT5S}") Duration revalidateAfter,
+                         @Value("${app.photos.hot-cache.admission-window:PT1M}") Duration admissionWindow) {
+        this.photoMetrics = photoMetrics;
+        this.maxFileSize = maxFileSize.toBytes();
+        this.revalidateNanos = revalidateAfter.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(budget.toBytes())
+                .weigher((Path path, Entry entry) -> (int) entry.size())
+                .recordStats()
+                .build();
+        this.seenOnce = Caffeine.newBuilder()
+                .expireAfterWrite(admissionWindow)
+                .maximumSize(10_000)
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "photos.hot");
+        Gauge.builder("photos.hot.resident.bytes", cache,
+                        c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .description("Octets de photos gardés en mémoire")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Contenu en cache du fichier, revérifié sur disque si la dernière vérification est trop
+     * ancienne. Vide si absent, modifié ou supprimé.
+     */
+    public Optional<Entry> get(Path file) {
+        Entry entry = cache.getIfPresent(file);
+        if (entry == null) return Optional.empty();
+        if (System.nanoTime() - entry.checkedAt() < revalidateNanos) return Optional.of(entry);
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (attributes.size() == entry.size() && attributes.lastModifiedTime().toMillis() == entry.lastModified()) {
+                Entry checked = entry.checkedNow();
+                cache.asMap().replace(file, entry, checked);
+                return Optional.of(checked);
+            }
+        } catch (NoSuchFileException e) {
+            // supprimé : retiré ci-dessous
+        } catch (IOException e) {
+            // illisible : le disque tranchera au prochain accès
+        }
+        cache.invalidate(file);
+        return Optional.empty();
+    }
+
+    /**
+     * Fichier sur le point d'être lu depuis le disque (taille et date déjà connues) : chargé
+     * s'il est assez petit et déjà lu une fois dans la fenêtre d'admission, vide sinon (à
+     * servir depuis le disque). À n'appeler que lorsque le corps est réellement envoyé.
+     */
+    public Optional<Entry> admit(Path file, long size, long lastModified) throws IOException {
+        if (size > maxFileSize || size == 0) return Optional.empty();
+        if (seenOnce.asMap().putIfAbsent(file, Boolean.TRUE) == null) return Optional.empty();
+        seenOnce.invalidate(file);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file)) {
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // lecture complète
+            }
+        }
+        photoMetrics.io(PhotoMetrics.Operation.READ).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (buffer.hasRemaining()) return Optional.empty(); // fichier modifié pendant la lecture
+
+        Entry entry = new Entry(buffer.flip().asReadOnlyBuffer(), size, lastModified, System.nanoTime());
+        cache.put(file, entry);
+        return Optional.of(entry);
+    }
+
+    public void invalidate(Path file) {
+        cache.invalidate(file);
+        seenOnce.invalidate(file);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        seenOnce.invalidateAll();
+    }
+}
@@ -0,0 +1,121 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Organisation du dossier d'upload sur disque.
+ *
+ * Les fichiers sont répartis sur deux niveaux de sous-dossiers tirés du nom :
+ * {@code ab12cd….jpg → ab/12/ab12cd….jpg} (les 4 premiers caractères hexadécimaux du nom,
+ * ou du SHA-256 du nom s'il ne commence pas par de l'hexadécimal). Chaque dossier reste
+ * ainsi petit, quel que soit le nombre de photos. Les variantes suivent la même règle
+ * sous {@code variants/<taille>/}.
+ *
+ * Les anciens fichiers, à plat à la racine, sont déplacés en arrière-plan par le
+ * {@link PhotoLayoutMigrator} ; en attendant, {@link #locate(String)} cherche dans les deux
+ * organisations (réparti, à plat, puis réparti à nouveau au cas où le fichier vient d'être
+ * déplacé entre les deux vérifications). Les URL publiques ne changent pas.
+ */
+@Component
+public class PhotoLayout {
+
+    public static final String VARIANTS_DIR = "variants";
+
+    private static final Pattern HEX_PREFIX = Pattern.compile("^[0-9a-f]{4}.*");
+    private static final Pattern SHARD = Pattern.compile("[0-9a-f]{2}");
+
+    private final Path root;
+
+    public PhotoLayout(@Value("${app.upload.dir:uploads/users}") String uploadDir) {
+        this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    /** Emplacement d'un original dans l'organisation répartie (celle des nouveaux fichiers) */
+    public Path originalPath(String filename) {
+        return sharded(root, filename);
+    }
+
+    /** Emplacement d'une variante dans l'organisation répartie */
+    public Path variantPath(int size, String filename) {
+        return sharded(variantsRoot(size), filename);
+    }
+
+    public Path variantsRoot(int size) {
+        return root.resolve(VARIANTS_DIR).resolve(String.valueOf(size));
+    }
+
+    /** Original existant, où qu'il soit ; null s'il n'existe pas */
+    public Path locate(String filename) {
+        return locate(root, filename);
+    }
+
+    /** Variante existante, où qu'elle soit ; null si elle n'existe pas (encore) */
+    public Path locateVariant(int size, String filename) {
+        return locate(variantsRoot(size), filename);
+    }
+
+    /**
+     * Dossiers contenant des originaux : la racine (fichiers pas encore migrés) puis
+     * chaque dossier {@code ab/cd}.
+     */
+    public List<Path> originalDirectories() throws IOException {
+        List<Path> directories = new ArrayList<>();
+        directories.add(root);
+        for (Path first : shardDirectories(root)) {
+            directories.addAll(shardDirectories(first));
+        }
+        return directories;
+    }
+
+    /**
+     * Candidats dans l'ordre de recherche : réparti, à plat, réparti (le migrateur a pu
+     * déplacer le fichier entre les deux premières vérifications).
+     */
+    public List<Path> candidates(Path base, String filename) {
+        Path sharded = sharded(base, filename);
+        return List.of(sharded, base.resolve(filename), sharded);
+    }
+
+    private Path locate(Path base, String filename) {
+        for (Path candidate : candidates(base, filename)) {
+            if (Files.isRegularFile(candidate)) return candidate;
+        }
+        return null;
+    }
+
+    static Path sharded(Path base, String filename) {
+        String key = filename.toLowerCase(Locale.ROOT);
+        if (!HEX_PREFIX.matcher(key).matches()) {
+            key = HexFormat.of().formatHex(PhotoStorageService.sha256().digest(filename.getBytes(StandardCharsets.UTF_8)));
+        }
+        return base.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(filename);
+    }
+
+    private static List<Path> shardDirectories(Path parent) throws IOException {
+        List<Path> directories = new ArrayList<>();
+        if (!Files.isDirectory(parent)) return directories;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(parent,
+                p -> Files.isDirectory(p) && SHARD.matcher(p.getFileName().toString()).matches())) {
+            entries.forEach(directories::add);
+        }
+        directories.sort(null);
+        return directories;
+    }
+}
@@ -0,0 +1,128 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Migration en arrière-plan des fichiers encore à plat dans le dossier d'upload
+ * (originaux à la racine, variantes dans {@code variants/<taille>/}) vers l'organisation
+ * répartie de {@link PhotoLayout}.
+ *
+ * Chaque fichier est déplacé par un renommage atomique ; s'il existe déjà à sa nouvelle place
+ * (même nom = même contenu), la copie à plat est simplement supprimée. L'état de la migration
+ * est le disque lui-même : un passage interrompu (redémarrage, erreur) reprend là où il s'est
+ * arrêté, et un passage sur un dossier déjà migré ne fait rien. Pendant la migration,
+ * {@link PhotoLayout#locate(String)} trouve les fichiers dans les deux organisations.
+ *
+ * Les fichiers sont traités par lots de app.photos.layout.migration.batch-size, séparés par
+ * une pause, pour ne pas saturer le disque en pleine charge.
+ *
+ * Métrique : photos.layout.migrated.
+ */
+@Service
+@Log4j2
+public class PhotoLayoutMigrator {
+
+    private final PhotoLayout photoLayout;
+    private final PhotoHotCache photoHotCache;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final List<Integer> variantSizes;
+    private final Counter migrated;
+
+    public PhotoLayoutMigrator(PhotoLayout photoLayout,
+                               PhotoHotCache photoHotCache,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.photos.layout.migration.enabled:true}") boolean enabled,
+                               @Value("${app.photos.layout.migration.batch-size:200}") int batchSize,
+                               @Value("${app.photos.layout.migration.batch-pause:PT0.5S}") Duration batchPause,
+                               @Value("${app.photos.variants.sizes:48,128,512}") List<Integer> variantSizes) {
+        this.photoLayout = photoLayout;
+        this.photoHotCache = photoHotCache;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+        this.variantSizes = List.copyOf(variantSizes);
+        this.migrated = Counter.builder("photos.layout.migrated")
+                .description("Fichiers déplacés vers l'organisation répartie")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.photos.layout.migration.initial-delay:PT1M}",
+               fixedDelayString = "${app.photos.layout.migration.interval:PT1H}")
+    public void migrate() {
+        if (!enabled || !Files.isDirectory(photoLayout.root())) return;
+
+        int moved = 0;
+        try {
+            moved += migrateDirectory(photoLayout.root());
+            for (int size : variantSizes) {
+                moved += migrateDirectory(photoLayout.variantsRoot(size));
+            }
+        } catch (IOException e) {
+            log.error("Migration des photos interrompue (reprise au prochain passage) : {}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Migration des photos interrompue");
+        }
+        if (moved > 0) {
+            log.info("Migration des photos : {} fichier(s) déplacé(s) vers les sous-dossiers", moved);
+        }
+    }
+
+    /**
+     * Déplace les fichiers à plat de {@code directory} vers leurs sous-dossiers.
+     *
+     * @return le nombre de fichiers migrés
+     */
+    private int migrateDirectory(Path directory) throws IOException, InterruptedException {
+        if (!Files.isDirectory(directory)) return 0;
+
+        int moved = 0;
+        int inBatch = 0;
+        // Fichiers cachés exclus : .part en cours d'écriture, .quarantine
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                p -> Files.isRegularFile(p) && !p.getFileName().toString().startsWith("."))) {
+            for (Path flat : files) {
+                if (move(flat, PhotoLayout.sharded(directory, flat.getFileName().toString()))) {
+                    moved++;
+                    migrated.increment();
+                }
+                if (++inBatch == batchSize) {
+                    inBatch = 0;
+                    if (!batchPause.isZero()) Thread.sleep(batchPause);
+                }
+            }
+        }
+        return moved;
+    }
+
+    private boolean move(Path flat, Path target) throws IOException {
+        try {
+            Files.createDirectories(target.getParent());
+            if (Files.exists(target)) {
+                Files.deleteIfExists(flat);
+            } else {
+                Files.move(flat, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (NoSuchFileException e) {
+            return false; // déplacé ou supprimé entre-temps (nettoyage des orphelins)
+        }
+        photoHotCache.invalidate(flat);
+        return true;
+    }
+}
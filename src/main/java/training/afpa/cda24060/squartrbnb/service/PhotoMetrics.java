@@ -0,0 +1,60 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Métriques métier des photos, communes aux différents chemins d'upload et au stockage :
+ *  - photos.upload.bytes{mode}      octets reçus (multipart, stream, chunked) ;
+ *  - photos.upload.rejected{reason} uploads refusés (type, size, empty, incomplete) ;
+ *  - photos.file.io{operation}      temps d'entrée/sortie disque (write, move, read, chunk).
+ *
+ * Histogrammes et SLO de photos.file.io : management.metrics.distribution.*.photos.file.io.
+ */
+@Component
+public class PhotoMetrics {
+
+    public enum Mode { MULTIPART, STREAM, CHUNKED }
+
+    public enum Rejection { TYPE, SIZE, EMPTY, INCOMPLETE }
+
+    public enum Operation { WRITE, MOVE, READ, CHUNK }
+
+    private final MeterRegistry meterRegistry;
+
+    public PhotoMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void received(Mode mode, long bytes) {
+        Counter.builder("photos.upload.bytes")
+                .description("Octets de photos reçus")
+                .baseUnit("bytes")
+                .tag("mode", tag(mode))
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    public void rejected(Rejection reason) {
+        Counter.builder("photos.upload.rejected")
+                .description("Uploads de photos refusés")
+                .tag("reason", tag(reason))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public Timer io(Operation operation) {
+        return Timer.builder("photos.file.io")
+                .description("Entrées/sorties disque des photos")
+                .tag("operation", tag(operation))
+                .register(meterRegistry);
+    }
+
+    private static String tag(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,370 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import training.afpa.cda24060.squartrbnb.repository.PhotoBlobRepository;
+import training.afpa.cda24060.squartrbnb.repository.UserRepository;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rapprochement périodique entre le dossier d'upload et les User.photoPath.
+ *
+ * Le dossier (racine et sous-dossiers {@link PhotoLayout}) est parcouru en flux, par lots de app.photos.gc.batch-size fichiers ; chaque lot
+ * donne lieu à une requête IN sur photo_path. Un fichier :
+ *  - plus récent que le délai de grâce (app.photos.gc.grace-period) est ignoré : l'upload
+ *    vient d'avoir lieu et n'est pas encore rattaché à un utilisateur ;
+ *  - référencé voit son compteur photo_blobs recalé sur le nombre réel d'utilisateurs ;
+ *  - orphelin est mis en quarantaine (dossier ".quarantine", non servi) ou supprimé
+ *    (app.photos.gc.mode), avec ses variantes.
+ *
+ * photo_path est saisi librement (chemin relatif, "/uploads/…", URL absolue) : un fichier sans
+ * correspondance exacte est revérifié sur son nom ({@link UserRepository#countByPhotoFilename})
+ * juste avant d'être traité. L'orphelin est écarté sous le verrou de son contenu
+ * ({@link PhotoContentLocks}), que prend aussi la réutilisation d'un contenu : une réutilisation
+ * remet à jour la date du fichier, revérifiée sous le verrou. La ligne photo_blobs est supprimée
+ * avant le fichier ; une réutilisation ultérieure ne la trouve plus et réécrit le contenu.
+ *
+ * Une pause sépare les lots : le job peut tourner en pleine charge. La quarantaine est vidée
+ * après app.photos.gc.quarantine-retention ; un fichier de nouveau référencé entre-temps est
+ * remis en place (republié s'il est adressé par contenu) au lieu d'être supprimé.
+ *
+ * Les fichiers ".part" abandonnés (uploads interrompus) sont supprimés après le délai de grâce.
+ *
+ * Métriques : photos.gc.reclaimed (octets libérés), photos.gc.files (par action : quarantined,
+ * deleted, restored), photos.gc.duration.
+ */
+@Service
+@Log4j2
+public class PhotoReconciliationService {
+
+    public static final String QUARANTINE_DIR = ".quarantine";
+
+    private static final Pattern HASHED_NAME = Pattern.compile("([0-9a-f]{64})\\.[a-z0-9]{1,5}");
+
+    public enum Mode { QUARANTINE, DELETE }
+
+    private final UserRepository userRepository;
+    private final PhotoBlobRepository photoBlobRepository;
+    private final PhotoStorageService photoStorageService;
+    private final PhotoHotCache photoHotCache;
+    private final PhotoLayout photoLayout;
+    private final PhotoContentLocks photoContentLocks;
+    private final Mode mode;
+    private final Duration gracePeriod;
+    private final Duration quarantineRetention;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final List<Integer> variantSizes;
+
+    private final Counter reclaimed;
+    private final Counter quarantined;
+    private final Counter deleted;
+    private final Counter restored;
+    private final Timer duration;
+
+    public PhotoReconciliationService(UserRepository userRepository,
+                                      PhotoBlobRepository photoBlobRepository,
+                                      PhotoStorageService photoStorageService,
+                                      PhotoHotCache photoHotCache,
+                                      PhotoLayout photoLayout,
+                                      PhotoContentLocks photoContentLocks,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.photos.gc.mode:QUARANTINE}") Mode mode,
+                                      @Value("${app.photos.gc.grace-period:PT24H}") Duration gracePeriod,
+                                      @Value("${app.photos.gc.quarantine-retention:P7D}") Duration quarantineRetention,
+                                      @Value("${app.photos.gc.batch-size:500}") int batchSize,
+                                      @Value("${app.photos.gc.batch-pause:PT1S}") Duration batchPause,
+                                      @Value("${app.photos.variants.sizes:48,128,512}") List<Integer> variantSizes) {
+        this.userRepository = userRepository;
+        this.photoBlobRepository = photoBlobRepository;
+        this.photoStorageService = photoStorageService;
+        this.photoHotCache = photoHotCache;
+        this.photoLayout = photoLayout;
+        this.photoContentLocks = photoContentLocks;
+        this.mode = mode;
+        this.gracePeriod = gracePeriod;
+        this.quarantineRetention = quarantineRetention;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+        this.variantSizes = List.copyOf(variantSizes);
+
+        this.reclaimed = Counter.builder("photos.gc.reclaimed")
+                .description("Octets libérés dans le dossier d'upload")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.quarantined = Counter.builder("photos.gc.files").tag("action", "quarantined")
+                .description("Photos orphelines traitées")
+                .register(meterRegistry);
+        this.deleted = Counter.builder("photos.gc.files").tag("action", "deleted")
+                .description("Photos orphelines traitées")
+                .register(meterRegistry);
+        this.restored = Counter.builder("photos.gc.files").tag("action", "restored")
+                .description("Photos orphelines traitées")
+                .register(meterRegistry);
+        this.duration = Timer.builder("photos.gc.duration")
+                .description("Durée d'un passage de rapprochement")
+                .register(meterRegistry);
+    }
+
+    /** Fichier candidat d'un lot */
+    private record Candidate(Path file, String filename, long size) {
+    }
+
+    @Scheduled(initialDelayString = "${app.photos.gc.initial-delay:PT10M}",
+               fixedDelayString = "${app.photos.gc.interval:PT6H}")
+    public void reconcile() {
+        if (!Files.isDirectory(photoLayout.root())) return;
+        long start = System.nanoTime();
+        Instant graceLimit = Instant.now().minus(gracePeriod);
+        int scanned = 0;
+        int orphans = 0;
+
+        try {
+            List<Candidate> batch = new ArrayList<>(batchSize);
+            for (Path directory : photoLayout.originalDirectories()) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                    for (Path file : files) {
+                        BasicFileAttributes attributes = readAttributes(file);
+                        if (attributes == null || !attributes.isRegularFile()) continue;
+                        if (attributes.lastModifiedTime().toInstant().isAfter(graceLimit)) continue;
+
+                        String filename = file.getFileName().toString();
+                        if (filename.startsWith(".")) {
+                            // .part d'un upload abandonné
+                            if (filename.endsWith(".part")) remove(file, attributes.size());
+                            continue;
+                        }
+
+                        batch.add(new Candidate(file, filename, attributes.size()));
+                        scanned++;
+                        if (batch.size() == batchSize) {
+                            orphans += processBatch(batch, graceLimit);
+                            batch.clear();
+                            pause();
+                        }
+                    }
+                }
+            }
+            if (!batch.isEmpty()) orphans += processBatch(batch, graceLimit);
+
+            purgeQuarantine();
+        } catch (IOException e) {
+            log.error("Rapprochement des photos interrompu : {}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Rapprochement des photos interrompu");
+        } finally {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        log.info("Rapprochement des photos : {} fichier(s) examiné(s), {} orphelin(s) ({})", scanned, orphans, mode);
+    }
+
+    /**
+     * @return le nombre d'orphelins traités
+     */
+    private int processBatch(List<Candidate> batch, Instant graceLimit) throws IOException {
+        Map<String, Long> users = countUsers(batch);
+
+        List<Candidate> orphans = new ArrayList<>();
+        for (Candidate candidate : batch) {
+            long count = users.getOrDefault(photoStorageService.publicPath(candidate.filename()), 0L);
+            if (count == 0) {
+                orphans.add(candidate);
+            } else {
+                updateRefCount(candidate.filename(), count);
+            }
+        }
+
+        // Revérification juste avant d'agir, sur le nom de fichier : photo_path peut avoir une
+        // autre forme que le chemin public, ou un utilisateur s'être rattaché entre-temps
+        int handled = 0;
+        for (Candidate orphan : orphans) {
+            long count = userRepository.countByPhotoFilename(orphan.filename());
+            if (count > 0) {
+                updateRefCount(orphan.filename(), count);
+            } else if (handleOrphan(orphan, graceLimit)) {
+                handled++;
+            }
+        }
+        return handled;
+    }
+
+    private Map<String, Long> countUsers(List<Candidate> candidates) {
+        List<String> paths = candidates.stream().map(c -> photoStorageService.publicPath(c.filename())).toList();
+        Map<String, Long> users = new HashMap<>();
+        for (UserRepository.PhotoPathCount row : userRepository.countByPhotoPathIn(paths)) {
+            users.put(row.getPhotoPath(), row.getUsers());
+        }
+        return users;
+    }
+
+    private void updateRefCount(String filename, long users) {
+        hash(filename).ifPresent(h -> photoBlobRepository.updateRefCount(h, (int) users));
+    }
+
+    /**
+     * @return faux si le contenu a été réuploadé ou réutilisé entre-temps (fichier laissé en place)
+     */
+    private boolean handleOrphan(Candidate orphan, Instant graceLimit) throws IOException {
+        Optional<String> hash = hash(orphan.filename());
+        long freed = photoContentLocks.withLock(hash.orElse(orphan.filename()), () -> {
+            // Même contenu réuploadé entre-temps : date de modification remise à jour
+            BasicFileAttributes attributes = readAttributes(orphan.file());
+            if (attributes == null || attributes.lastModifiedTime().toInstant().isAfter(graceLimit)) return -1L;
+
+            // La ligne d'abord : une réutilisation qui suivrait réécrit le contenu
+            hash.ifPresent(photoBlobRepository::deleteByHash);
+            return discard(orphan);
+        });
+        if (freed < 0) return false;
+
+        reclaimed.increment(freed);
+        log.debug("Photo orpheline {} : {}", mode == Mode.DELETE ? "supprimée" : "mise en quarantaine", orphan.filename());
+        return true;
+    }
+
+    /**
+     * Supprime ou met en quarantaine l'original, et supprime ses variantes.
+     *
+     * @return les octets libérés
+     */
+    private long discard(Candidate orphan) throws IOException {
+        long freed = 0;
+        if (mode == Mode.DELETE) {
+            Files.deleteIfExists(orphan.file());
+            freed += orphan.size();
+            deleted.increment();
+        } else {
+            // L'original ne libère de place qu'à la purge de la quarantaine
+            Path quarantine = Files.createDirectories(photoLayout.root().resolve(QUARANTINE_DIR));
+            Path target = quarantine.resolve(orphan.filename());
+            Files.move(orphan.file(), target, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            quarantined.increment();
+        }
+        photoHotCache.invalidate(orphan.file());
+
+        // Les variantes se régénèrent à partir de l'original : supprimées dans les deux modes
+        for (int size : variantSizes) {
+            Path variant;
+            while ((variant = photoLayout.locateVariant(size, orphan.filename())) != null) {
+                BasicFileAttributes attributes = readAttributes(variant);
+                if (attributes != null && Files.deleteIfExists(variant)) {
+                    freed += attributes.size();
+                }
+                photoHotCache.invalidate(variant);
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Parcourt la quarantaine par lots : un fichier de nouveau référencé est remis en place, un
+     * fichier plus ancien que la rétention est supprimé (après revérification sur son nom).
+     */
+    private void purgeQuarantine() throws IOException, InterruptedException {
+        Path quarantine = photoLayout.root().resolve(QUARANTINE_DIR);
+        if (!Files.isDirectory(quarantine)) return;
+        Instant limit = Instant.now().minus(quarantineRetention);
+        List<Candidate> batch = new ArrayList<>(batchSize);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(quarantine)) {
+            for (Path file : files) {
+                BasicFileAttributes attributes = readAttributes(file);
+                if (attributes == null || !attributes.isRegularFile()) continue;
+                batch.add(new Candidate(file, file.getFileName().toString(), attributes.size()));
+                if (batch.size() == batchSize) {
+                    processQuarantineBatch(batch, limit);
+                    batch.clear();
+                    pause();
+                }
+            }
+        }
+        if (!batch.isEmpty()) processQuarantineBatch(batch, limit);
+    }
+
+    private void processQuarantineBatch(List<Candidate> batch, Instant limit) throws IOException {
+        Map<String, Long> users = countUsers(batch);
+        for (Candidate candidate : batch) {
+            long count = users.getOrDefault(photoStorageService.publicPath(candidate.filename()), 0L);
+            if (count == 0) {
+                BasicFileAttributes attributes = readAttributes(candidate.file());
+                // Date de modification = date de mise en quarantaine
+                if (attributes == null || !attributes.lastModifiedTime().toInstant().isBefore(limit)) continue;
+                count = userRepository.countByPhotoFilename(candidate.filename());
+                if (count == 0) {
+                    remove(candidate.file(), candidate.size());
+                    continue;
+                }
+            }
+            restore(candidate, count);
+        }
+    }
+
+    /**
+     * Sortie de quarantaine : un contenu adressé par hash est republié (ligne photo_blobs,
+     * variantes), un ancien fichier est simplement replacé.
+     */
+    private void restore(Candidate candidate, long users) throws IOException {
+        Optional<String> hash = hash(candidate.filename());
+        if (hash.isPresent()) {
+            String extension = candidate.filename().substring(hash.get().length());
+            photoStorageService.publish(candidate.file(), hash.get(), candidate.size(), extension);
+            photoBlobRepository.updateRefCount(hash.get(), (int) users);
+        } else {
+            Path target = photoLayout.originalPath(candidate.filename());
+            Files.createDirectories(target.getParent());
+            if (Files.exists(target)) {
+                Files.deleteIfExists(candidate.file());
+            } else {
+                Files.move(candidate.file(), target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        restored.increment();
+        log.info("Photo de nouveau référencée, sortie de quarantaine : {}", candidate.filename());
+    }
+
+    private void remove(Path file, long size) throws IOException {
+        if (Files.deleteIfExists(file)) {
+            reclaimed.increment(size);
+        }
+    }
+
+    private void pause() throws InterruptedException {
+        if (!batchPause.isZero()) Thread.sleep(batchPause);
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null; // supprimé entre-temps
+        }
+    }
+
+    private static Optional<String> hash(String filename) {
+        Matcher m = HASHED_NAME.matcher(filename);
+        return m.matches() ? Optional.of(m.group(1)) : Optional.empty();
+    }
+}
@@ -0,0 +1,266 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import training.afpa.cda24060.squartrbnb.entity.PhotoBlob;
+import training.afpa.cda24060.squartrbnb.repository.PhotoBlobRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Stockage des photos adressé par contenu : le fichier est nommé d'après le SHA-256 de ses
+ * octets ({@code <hash>.<ext>}), une image identique n'est donc écrite qu'une fois.
+ *
+ * Un contenu déjà connu (table photo_blobs) se résout en une recherche par hash : aucune
+ * écriture en base ni sur disque, seule la date du fichier est remise à jour (délai de grâce
+ * du rapprochement). Le chemin public renvoyé est stable pour un même contenu. Le compteur
+ * de références de photo_blobs (utilisateurs rattachés) n'est tenu que par le rapprochement.
+ *
+ * Chaque nouveau contenu déclenche la génération de ses variantes ({@link PhotoVariantService}).
+ * La réutilisation et la publication d'un contenu se font sous son verrou
+ * ({@link PhotoContentLocks}), que prend aussi le rapprochement avant d'écarter un orphelin.
+ */
+@Service
+@Log4j2
+public class PhotoStorageService {
+
+    private static final Pattern EXTENSION = Pattern.compile("\\.[a-z0-9]{1,5}");
+
+    private final PhotoBlobRepository photoBlobRepository;
+    private final PhotoVariantService photoVariantService;
+    private final PhotoLayout photoLayout;
+    private final PhotoMetrics photoMetrics;
+    private final PhotoContentLocks photoContentLocks;
+    private final String uploadDir;
+
+    public PhotoStorageService(PhotoBlobRepository photoBlobRepository,
+                               PhotoVariantService photoVariantService,
+                               PhotoLayout photoLayout,
+                               PhotoMetrics photoMetrics,
+                               PhotoContentLocks photoContentLocks,
+                               @Value("${app.upload.dir:uploads/users}") String uploadDir) {
+        this.photoBlobRepository = photoBlobRepository;
+        this.photoVariantService = photoVariantService;
+        this.photoLayout = photoLayout;
+        this.photoMetrics = photoMetrics;
+        this.photoContentLocks = photoContentLocks;
+        this.uploadDir = uploadDir;
+    }
+
+    /**
+     * @param publicPath   chemin à renvoyer au client (ex. "uploads/users/ab12….jpg")
+     * @param deduplicated vrai si le contenu existait déjà et n'a pas été réécrit
+     */
+    public record StoredPhoto(String publicPath, String hash, long size, boolean deduplicated) {
+    }
+
+    /**
+     * Stocke un upload déjà reçu (multipart). Une première lecture calcule le hash ; le contenu
+     * n'est écrit (fichier temporaire puis renommage atomique) que s'il est nouveau.
+     */
+    public StoredPhoto store(InputStreamSource source, String originalFilename) throws IOException {
+        MessageDigest digest = sha256();
+        long size = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = source.getInputStream()) {
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                digest.update(buffer, 0, n);
+                size += n;
+            }
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        photoMetrics.received(PhotoMetrics.Mode.MULTIPART, size);
+
+        Optional<StoredPhoto> existing = reuse(hash);
+        if (existing.isPresent()) return existing.get();
+
+        Path part = Files.createTempFile(createUploadDir(), ".upload-", ".part");
+        long start = System.nanoTime();
+        try (InputStream in = source.getInputStream()) {
+            Files.copy(in, part, StandardCopyOption.REPLACE_EXISTING);
+            photoMetrics.io(PhotoMetrics.Operation.WRITE).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (IOException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        return publish(part, hash, size, extension(originalFilename));
+    }
+
+    /**
+     * Stocke un upload lu directement dans le corps de la requête, en un seul passage :
+     * les octets sont hachés et écrits au fil de l'eau via un {@link FileChannel} dans un
+     * fichier ".part" du dossier final, renommé atomiquement à la fin.
+     *
+     * La signature d'image est contrôlée sur les premiers octets, avant toute écriture, et la
+     * taille à chaque bloc : un upload invalide est rejeté sans être stocké.
+     *
+     * @throws IllegalArgumentException        contenu vide ou qui n'est pas une image acceptée
+     * @throws MaxUploadSizeExceededException  plus de {@code maxSize} octets
+     */
+    public StoredPhoto storeStream(InputStream in, long maxSize) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        int headerLength = in.readNBytes(buffer, 0, ImageFormat.SIGNATURE_LENGTH);
+        if (headerLength == 0) {
+            photoMetrics.rejected(PhotoMetrics.Rejection.EMPTY);
+            throw new IllegalArgumentException("Aucun fichier reçu.");
+        }
+        ImageFormat format = ImageFormat.detect(buffer, headerLength).orElse(null);
+        if (format == null) {
+            photoMetrics.rejected(PhotoMetrics.Rejection.TYPE);
+            throw new IllegalArgumentException("Le fichier doit être une image (JPEG, PNG, GIF ou WebP).");
+        }
+
+        MessageDigest digest = sha256();
+        Path part = Files.createTempFile(createUploadDir(), ".upload-", ".part");
+        long size = 0;
+        long writeNanos = 0;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            for (int n = headerLength; n != -1; n = in.read(buffer)) {
+                size += n;
+                if (size > maxSize) {
+                    photoMetrics.rejected(PhotoMetrics.Rejection.SIZE);
+                    throw new MaxUploadSizeExceededException(maxSize);
+                }
+                digest.update(buffer, 0, n);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                // Écriture seule : la lecture du corps dépend du réseau du client
+                long start = System.nanoTime();
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                writeNanos += System.nanoTime() - start;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        photoMetrics.received(PhotoMetrics.Mode.STREAM, size);
+        photoMetrics.io(PhotoMetrics.Operation.WRITE).record(writeNanos, TimeUnit.NANOSECONDS);
+
+        try {
+            return publish(part, HexFormat.of().formatHex(digest.digest()), size, format.extension());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+    }
+
+    /**
+     * Publie un fichier déjà écrit et haché dans le dossier d'upload : renommé en
+     * {@code <hash><extension>} dans son sous-dossier ({@link PhotoLayout}), ou supprimé si ce
+     * contenu est déjà stocké.
+     */
+    public StoredPhoto publish(Path part, String hash, long size, String extension) throws IOException {
+        return photoContentLocks.withLock(hash, () -> {
+            Optional<StoredPhoto> existing = reuse(hash);
+            if (existing.isPresent()) {
+                Files.deleteIfExists(part);
+                return existing.get();
+            }
+
+            String filename = hash + extension;
+            Path target = photoLayout.originalPath(filename);
+            long start = System.nanoTime();
+            Files.createDirectories(target.getParent());
+            Files.move(part, target,
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            photoMetrics.io(PhotoMetrics.Operation.MOVE).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            try {
+                photoBlobRepository.insert(hash, filename, size, Instant.now());
+            } catch (DataIntegrityViolationException e) {
+                // Même contenu publié en parallèle : le fichier (identique) est déjà en place
+                log.info("Photo déjà enregistrée en parallèle : {}", filename);
+                return new StoredPhoto(publicPath(filename), hash, size, true);
+            }
+            photoVariantService.enqueue(filename);
+            log.info("Nouvelle photo stockée : {} ({} octets)", filename, size);
+            return new StoredPhoto(publicPath(filename), hash, size, false);
+        });
+    }
+
+    public Path createUploadDir() throws IOException {
+        Path root = photoLayout.root();
+        if (!Files.exists(root)) {
+            Files.createDirectories(root);
+            log.info("Dossier uploads créé : {}", root);
+        }
+        return root;
+    }
+
+    /**
+     * Extension normalisée (minuscules, avec le point) d'après le nom d'origine ; vide si absente
+     * ou inattendue.
+     */
+    public static String extension(String originalFilename) {
+        if (originalFilename == null || !originalFilename.contains(".")) return "";
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.')).toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    /**
+     * Contenu déjà stocké et toujours présent sur disque : réutilisé tel quel. Sous le verrou du
+     * contenu, le rapprochement ne peut pas l'écarter entre la lecture et la mise à jour de la date.
+     */
+    private Optional<StoredPhoto> reuse(String hash) throws IOException {
+        return photoContentLocks.withLock(hash, () -> {
+            Optional<PhotoBlob> blob = photoBlobRepository.findById(hash);
+            Path file = blob.map(b -> photoLayout.locate(b.getFilename())).orElse(null);
+            // Ligne ou fichier absent (écarté par le rapprochement) : le contenu sera réécrit
+            if (file == null) return Optional.empty();
+            touch(file);
+            log.info("Photo déjà stockée, réutilisée : {}", blob.get().getFilename());
+            return Optional.of(new StoredPhoto(publicPath(blob.get().getFilename()), hash, blob.get().getSize(), true));
+        });
+    }
+
+    /**
+     * Un contenu réutilisé compte comme un nouvel upload pour le délai de grâce du
+     * {@link PhotoReconciliationService} : il ne doit pas être supprimé avant d'être rattaché.
+     */
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.warn("Impossible de mettre à jour la date de {} : {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Chemin public (ex. "uploads/users/<hash>.jpg") : partie de app.upload.dir après "static/".
+     * C'est la valeur enregistrée dans User.photoPath.
+     */
+    public String publicPath(String filename) {
+        if (uploadDir.contains("static/")) {
+            return uploadDir.substring(uploadDir.indexOf("static/") + "static/".length()) + "/" + filename;
+        }
+        return uploadDir + "/" + filename;
+    }
+}
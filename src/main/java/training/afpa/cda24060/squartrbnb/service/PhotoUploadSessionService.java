@@ -0,0 +1,398 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import training.afpa.cda24060.squartrbnb.dto.PhotoUploadStatusDTO;
+import training.afpa.cda24060.squartrbnb.exception.DataConflictException;
+import training.afpa.cda24060.squartrbnb.exception.ResourceNotFoundException;
+import training.afpa.cda24060.squartrbnb.exception.ServiceUnavailableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Upload de photo par morceaux, reprenable après une coupure réseau.
+ *
+ * Protocole :
+ *  1. {@link #open(long)} réserve une session pour une taille donnée et fixe la taille des
+ *     morceaux (app.photos.chunked.chunk-size) ;
+ *  2. chaque morceau est envoyé séparément ({@link #writeChunk(String, int, InputStream)}) et
+ *     écrit directement à sa position dans un fichier ".part" (écriture positionnelle
+ *     {@link FileChannel}) : l'ordre d'arrivée est libre et plusieurs morceaux peuvent être
+ *     envoyés en parallèle ;
+ *  3. après une coupure, {@link #status(String)} indique les morceaux manquants : seuls ceux-là
+ *     sont renvoyés ;
+ *  4. {@link #commit(String)} vérifie que tout est là, contrôle la signature d'image, calcule
+ *     le hash et publie le fichier comme un upload classique ({@link PhotoStorageService#publish}).
+ *
+ * Chaque requête ne transporte qu'un morceau : un thread n'est occupé que le temps d'un
+ * morceau, et une coupure ne coûte que le morceau en cours.
+ *
+ * Les sessions sont gardées en mémoire. Une session sans activité depuis
+ * app.photos.chunked.session-ttl est supprimée avec son fichier ; après un redémarrage, les
+ * ".part" restants sont supprimés par le {@link PhotoReconciliationService}.
+ *
+ * Métriques : photos.chunked.sessions (sessions ouvertes), photos.chunked.expired, et celles de
+ * {@link PhotoMetrics} (mode/opération "chunked"/"chunk").
+ */
+@Service
+@Log4j2
+public class PhotoUploadSessionService {
+
+    private final PhotoStorageService photoStorageService;
+    private final PhotoMetrics photoMetrics;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long maxFileSize;
+    private final int chunkSize;
+    /** Places de session : réservée avant la création, rendue à la fermeture */
+    private final Semaphore sessionSlots;
+    private final Duration sessionTtl;
+    private final Counter expired;
+
+    public PhotoUploadSessionService(PhotoStorageService photoStorageService,
+                                     PhotoMetrics photoMetrics,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${spring.servlet.multipart.max-file-size:10MB}") DataSize maxFileSize,
+                                     @Value("${app.photos.chunked.chunk-size:1MB}") DataSize chunkSize,
+                                     @Value("${app.photos.chunked.max-sessions:100}") int maxSessions,
+                                     @Value("${app.photos.chunked.session-ttl:PT1H}") Duration sessionTtl) {
+        this.photoStorageService = photoStorageService;
+        this.photoMetrics = photoMetrics;
+        this.maxFileSize = maxFileSize.toBytes();
+        this.chunkSize = (int) chunkSize.toBytes();
+        this.sessionSlots = new Semaphore(maxSessions);
+        this.sessionTtl = sessionTtl;
+
+        Gauge.builder("photos.chunked.sessions", sessions, Map::size)
+                .description("Uploads par morceaux en cours")
+                .register(meterRegistry);
+        this.expired = Counter.builder("photos.chunked.expired")
+                .description("Uploads par morceaux abandonnés puis expirés")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Session d'upload. Les écritures de morceaux partagent le verrou en lecture ; la
+     * finalisation, l'abandon et l'expiration prennent le verrou en écriture, de sorte que le
+     * fichier n'est jamais fermé pendant une écriture. Les morceaux reçus sont protégés par
+     * un {@link ReentrantLock} distinct (pas de {@code synchronized} : threads virtuels).
+     */
+    private static final class Session {
+        final String id;
+        final Path file;
+        final FileChannel channel;
+        final long size;
+        final int chunkSize;
+        final int chunkCount;
+        final BitSet received;
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final ReentrantLock receivedLock = new ReentrantLock();
+        volatile Instant lastActivity = Instant.now();
+        boolean closed;
+
+        Session(String id, Path file, FileChannel channel, long size, int chunkSize) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+            this.received = new BitSet(chunkCount);
+        }
+
+        long offset(int index) {
+            return (long) index * chunkSize;
+        }
+
+        long length(int index) {
+            return Math.min(chunkSize, size - offset(index));
+        }
+
+        void markReceived(int index, boolean value) {
+            receivedLock.lock();
+            try {
+                received.set(index, value);
+            } finally {
+                receivedLock.unlock();
+            }
+        }
+
+        boolean isComplete() {
+            return snapshot().cardinality() == chunkCount;
+        }
+
+        BitSet snapshot() {
+            receivedLock.lock();
+            try {
+                return (BitSet) received.clone();
+            } finally {
+                receivedLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException       taille nulle ou négative
+     * @throws MaxUploadSizeExceededException taille supérieure à la taille maximale d'upload
+     * @throws ServiceUnavailableException    trop de sessions ouvertes
+     */
+    public PhotoUploadStatusDTO open(long size) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("La taille du fichier doit être positive.");
+        }
+        if (size > maxFileSize) {
+            photoMetrics.rejected(PhotoMetrics.Rejection.SIZE);
+            throw new MaxUploadSizeExceededException(maxFileSize);
+        }
+        // Réservation atomique : des ouvertures simultanées ne dépassent pas la limite
+        if (!sessionSlots.tryAcquire()) {
+            throw new ServiceUnavailableException("Trop d'uploads en cours, réessayez plus tard.");
+        }
+
+        String id = UUID.randomUUID().toString();
+        Session session;
+        try {
+            // Fichier caché : ni servi, ni migré, supprimé par le rapprochement s'il est abandonné
+            Path file = photoStorageService.createUploadDir().resolve(".chunked-" + id + ".part");
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            session = new Session(id, file, channel, size, chunkSize);
+        } catch (IOException | RuntimeException e) {
+            sessionSlots.release();
+            throw e;
+        }
+        sessions.put(id, session);
+
+        log.info("Upload par morceaux ouvert : {} ({} octets, {} morceau(x))", id, size, session.chunkCount);
+        return toStatus(session);
+    }
+
+    /**
+     * Écrit un morceau à sa position. Renvoyer un morceau déjà reçu le réécrit simplement.
+     *
+     * @throws ResourceNotFoundException session inconnue, expirée ou terminée
+     * @throws IllegalArgumentException  numéro hors limites, taille incorrecte, ou premier
+     *                                   morceau qui n'est pas le début d'une image acceptée
+     */
+    public PhotoUploadStatusDTO writeChunk(String uploadId, int index, InputStream in) throws IOException {
+        Session session = find(uploadId);
+        if (index < 0 || index >= session.chunkCount) {
+            throw new IllegalArgumentException("Numéro de morceau invalide : " + index
+                    + " (attendu entre 0 et " + (session.chunkCount - 1) + ").");
+        }
+        long expected = session.length(index);
+
+        session.lock.readLock().lock();
+        try {
+            if (session.closed) throw notFound(uploadId);
+            // Réécrit : ne compte comme reçu qu'une fois complet
+            session.markReceived(index, false);
+
+            long position = session.offset(index);
+            long written = 0;
+            long writeNanos = 0;
+            byte[] buffer = new byte[64 * 1024];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                written += n;
+                if (written > expected) {
+                    throw new IllegalArgumentException("Morceau " + index + " trop long (attendu " + expected + " octets).");
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                long start = System.nanoTime();
+                while (chunk.hasRemaining()) {
+                    position += session.channel.write(chunk, position);
+                }
+                writeNanos += System.nanoTime() - start;
+            }
+            photoMetrics.received(PhotoMetrics.Mode.CHUNKED, written);
+            photoMetrics.io(PhotoMetrics.Operation.CHUNK).record(writeNanos, TimeUnit.NANOSECONDS);
+            if (written != expected) {
+                throw new IllegalArgumentException("Morceau " + index + " incomplet : "
+                        + written + " octets reçus sur " + expected + ".");
+            }
+            if (index == 0) {
+                checkImage(session);
+            }
+            session.markReceived(index, true);
+            session.lastActivity = Instant.now();
+        } finally {
+            session.lock.readLock().unlock();
+        }
+        return toStatus(session);
+    }
+
+    public PhotoUploadStatusDTO status(String uploadId) {
+        return toStatus(find(uploadId));
+    }
+
+    /**
+     * Assemble l'upload : le fichier, complet, est haché puis publié.
+     *
+     * @throws DataConflictException    morceaux manquants
+     * @throws IllegalArgumentException le fichier n'est pas une image acceptée
+     */
+    public PhotoStorageService.StoredPhoto commit(String uploadId) throws IOException {
+        Session session = find(uploadId);
+        ImageFormat format;
+        session.lock.writeLock().lock();
+        try {
+            if (session.closed) throw notFound(uploadId);
+            if (!session.isComplete()) {
+                int missing = session.chunkCount - session.snapshot().cardinality();
+                photoMetrics.rejected(PhotoMetrics.Rejection.INCOMPLETE);
+                throw new DataConflictException("Upload incomplet : " + missing + " morceau(x) manquant(s).");
+            }
+            format = checkImage(session);
+            close(session);
+        } finally {
+            session.lock.writeLock().unlock();
+        }
+
+        try {
+            MessageDigest digest = PhotoStorageService.sha256();
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(session.file)) {
+                for (int n; (n = in.read(buffer)) != -1; ) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+            PhotoStorageService.StoredPhoto stored = photoStorageService.publish(session.file,
+                    HexFormat.of().formatHex(digest.digest()), session.size, format.extension());
+            log.info("Upload par morceaux terminé : {} → {}", uploadId, stored.publicPath());
+            return stored;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(session.file);
+            throw e;
+        }
+    }
+
+    public void abort(String uploadId) throws IOException {
+        Session session = find(uploadId);
+        session.lock.writeLock().lock();
+        try {
+            if (session.closed) throw notFound(uploadId);
+            close(session);
+        } finally {
+            session.lock.writeLock().unlock();
+        }
+        Files.deleteIfExists(session.file);
+        log.info("Upload par morceaux abandonné : {}", uploadId);
+    }
+
+    /**
+     * Supprime les sessions sans activité depuis app.photos.chunked.session-ttl.
+     */
+    @Scheduled(fixedDelayString = "${app.photos.chunked.cleanup-interval:PT1M}")
+    public void expireSessions() {
+        Instant limit = Instant.now().minus(sessionTtl);
+        for (Session session : sessions.values()) {
+            if (session.lastActivity.isAfter(limit)) continue;
+            // Un morceau en cours d'écriture repousse l'expiration au prochain passage
+            if (!session.lock.writeLock().tryLock()) continue;
+            try {
+                if (session.closed) continue;
+                close(session);
+                Files.deleteIfExists(session.file);
+                expired.increment();
+                log.info("Upload par morceaux expiré : {}", session.id);
+            } catch (IOException e) {
+                log.warn("Impossible de supprimer {} : {}", session.file, e.getMessage());
+            } finally {
+                session.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (Session session : sessions.values()) {
+            try {
+                close(session);
+            } catch (IOException e) {
+                // arrêt en cours : le fichier sera supprimé par le rapprochement
+            }
+        }
+    }
+
+    private Session find(String uploadId) {
+        Session session = sessions.get(uploadId);
+        if (session == null) throw notFound(uploadId);
+        return session;
+    }
+
+    private static ResourceNotFoundException notFound(String uploadId) {
+        return new ResourceNotFoundException("Upload", "id", uploadId);
+    }
+
+    /** À appeler sous le verrou en écriture (ou à l'arrêt) */
+    private void close(Session session) throws IOException {
+        session.closed = true;
+        if (sessions.remove(session.id) != null) sessionSlots.release();
+        session.channel.close();
+    }
+
+    private ImageFormat checkImage(Session session) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(ImageFormat.SIGNATURE_LENGTH);
+        int length = Math.max(0, session.channel.read(header, 0));
+        ImageFormat format = ImageFormat.detect(header.array(), length).orElse(null);
+        if (format == null) {
+            photoMetrics.rejected(PhotoMetrics.Rejection.TYPE);
+            throw new IllegalArgumentException("Le fichier doit être une image (JPEG, PNG, GIF ou WebP).");
+        }
+        return format;
+    }
+
+    private PhotoUploadStatusDTO toStatus(Session session) {
+        BitSet received = session.snapshot();
+
+        List<PhotoUploadStatusDTO.Range> ranges = new ArrayList<>();
+        for (int from = received.nextSetBit(0); from >= 0; ) {
+            int to = received.nextClearBit(from);
+            ranges.add(new PhotoUploadStatusDTO.Range(session.offset(from), session.offset(to - 1) + session.length(to - 1) - 1));
+            from = received.nextSetBit(to);
+        }
+        List<Integer> missing = new ArrayList<>();
+        for (int i = received.nextClearBit(0); i < session.chunkCount; i = received.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+
+        return PhotoUploadStatusDTO.builder()
+                .uploadId(session.id)
+                .size(session.size)
+                .chunkSize(session.chunkSize)
+                .chunkCount(session.chunkCount)
+                .received(ranges)
+                .missingChunks(missing)
+                .complete(missing.isEmpty())
+                .expiresAt(session.lastActivity.plus(sessionTtl))
+                .build();
+    }
+}
@@ -0,0 +1,298 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import training.afpa.cda24060.squartrbnb.entity.PhotoVariantJob;
+import training.afpa.cda24060.squartrbnb.entity.PhotoVariantJob.Status;
+import training.afpa.cda24060.squartrbnb.repository.PhotoVariantJobRepository;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Génération en arrière-plan des variantes redimensionnées des photos (48, 128, 512 px…).
+ *
+ * Chaque nouvelle photo stockée crée une tâche en base (photo_variant_jobs) : la file survit
+ * donc à un redémarrage. Un poller planifié réserve les tâches en attente et les confie à un
+ * pool borné ; le pool n'est jamais alimenté au-delà de sa file.
+ *
+ * Les variantes sont réencodées dans le format de l'extension (JPEG qualité
+ * app.photos.variants.quality, PNG ou GIF) à partir des seuls pixels : les métadonnées (EXIF,
+ * GPS…) de l'original ne sont pas recopiées, mais l'orientation EXIF d'un JPEG est appliquée
+ * aux pixels ({@link ExifOrientation}).
+ * Les autres extensions (WebP, BMP…) n'ont pas de variantes : l'original est toujours servi.
+ * Les dimensions sont lues dans l'en-tête avant décodage : une image de plus de
+ * app.photos.variants.max-pixels pixels est refusée sans être chargée en mémoire.
+ * Elles sont écrites dans {@code <app.upload.dir>/variants/<taille>/ab/cd/<fichier>} ({@link PhotoLayout}) ;
+ * tant qu'une variante n'existe pas, {@link training.afpa.cda24060.squartrbnb.controller.PhotoFileHandler}
+ * sert l'original.
+ *
+ * Métriques : photo.variants.pending (tâches en base), photo.variants.queue (file du pool),
+ * photo.variants.duration et photo.variants.failed.
+ */
+@Service
+@Log4j2
+public class PhotoVariantService {
+
+    private final PhotoVariantJobRepository jobRepository;
+    private final PhotoHotCache photoHotCache;
+    private final PhotoLayout photoLayout;
+    private final List<Integer> sizes;
+    private final float jpegQuality;
+    private final long maxPixels;
+    private final int maxAttempts;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong pending = new AtomicLong();
+    private final Timer duration;
+    private final Counter failed;
+
+    public PhotoVariantService(PhotoVariantJobRepository jobRepository,
+                               PhotoHotCache photoHotCache,
+                               PhotoLayout photoLayout,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.photos.variants.sizes:48,128,512}") List<Integer> sizes,
+                               @Value("${app.photos.variants.quality:0.85}") float jpegQuality,
+                               @Value("${app.photos.variants.max-pixels:40000000}") long maxPixels,
+                               @Value("${app.photos.variants.max-attempts:3}") int maxAttempts,
+                               @Value("${app.photos.variants.workers:2}") int workers,
+                               @Value("${app.photos.variants.queue-capacity:20}") int queueCapacity) {
+        this.jobRepository = jobRepository;
+        this.photoHotCache = photoHotCache;
+        this.photoLayout = photoLayout;
+        this.sizes = List.copyOf(sizes);
+        this.jpegQuality = jpegQuality;
+        this.maxPixels = maxPixels;
+        this.maxAttempts = maxAttempts;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "photo-variants-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("photo.variants.pending", pending, AtomicLong::get)
+                .description("Tâches de variantes en attente (base)")
+                .register(meterRegistry);
+        Gauge.builder("photo.variants.queue", executor, e -> e.getQueue().size())
+                .description("Tâches de variantes dans la file du pool")
+                .register(meterRegistry);
+        this.duration = Timer.builder("photo.variants.duration")
+                .description("Génération de toutes les variantes d'une photo")
+                .register(meterRegistry);
+        this.failed = Counter.builder("photo.variants.failed")
+                .description("Tâches de variantes en échec")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Crée la tâche de génération des variantes d'une photo nouvellement stockée.
+     */
+    public void enqueue(String filename) {
+        if (outputFormat(filename).isEmpty()) {
+            log.debug("Pas de variantes pour {} : format non réencodable", filename);
+            return;
+        }
+        Instant now = Instant.now();
+        jobRepository.save(PhotoVariantJob.builder()
+                .filename(filename)
+                .status(Status.PENDING)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        pending.incrementAndGet();
+        log.debug("Variantes planifiées pour {}", filename);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        int requeued = jobRepository.requeueRunning(Instant.now());
+        if (requeued > 0) {
+            log.info("{} tâche(s) de variantes interrompue(s) remise(s) en attente", requeued);
+        }
+    }
+
+    /**
+     * Réserve autant de tâches en attente que le pool peut en accepter et les lui confie.
+     */
+    @Scheduled(fixedDelayString = "${app.photos.variants.poll-interval:PT5S}")
+    public void poll() {
+        pending.set(jobRepository.countByStatus(Status.PENDING));
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0 || pending.get() == 0) return;
+
+        for (Long id : jobRepository.findIdsByStatus(Status.PENDING, Limit.of(capacity))) {
+            if (jobRepository.claim(id, Instant.now()) == 0) continue;
+            try {
+                executor.execute(() -> process(id));
+            } catch (RejectedExecutionException e) {
+                // Pool saturé : la tâche n'a pas été tentée
+                jobRepository.release(id, Instant.now());
+                return;
+            }
+        }
+    }
+
+    private void process(Long id) {
+        PhotoVariantJob job = jobRepository.findById(id).orElse(null);
+        if (job == null) return;
+
+        long start = System.nanoTime();
+        try {
+            generate(job.getFilename());
+            jobRepository.finish(id, Status.DONE, null, Instant.now());
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.info("Variantes générées pour {}", job.getFilename());
+        } catch (Throwable e) {
+            // Y compris OutOfMemoryError au décodage : la tâche ne doit pas rester RUNNING
+            failed.increment();
+            Status next = job.getAttempts() < maxAttempts ? Status.PENDING : Status.FAILED;
+            String error = e instanceof Error ? e.toString() : String.valueOf(e.getMessage());
+            jobRepository.finish(id, next, error.length() > 500 ? error.substring(0, 500) : error, Instant.now());
+            log.warn("Échec des variantes pour {} (tentative {}) : {}", job.getFilename(), job.getAttempts(), error);
+            if (e instanceof Error fatal) throw fatal;
+        }
+    }
+
+    private void generate(String filename) throws IOException {
+        Path source = photoLayout.locate(filename);
+        if (source == null) {
+            throw new IOException("Photo introuvable : " + filename);
+        }
+        String format = outputFormat(filename).orElse(null);
+        if (format == null) return; // tâche créée avant la restriction des formats
+        BufferedImage original = read(source, filename);
+        int orientation = format.equals("jpeg") ? ExifOrientation.read(source) : ExifOrientation.NORMAL;
+
+        for (int size : sizes) {
+            // Redressement après réduction : quelques pixels à tourner au lieu de l'original
+            BufferedImage resized = ExifOrientation.apply(resize(original, size, !format.equals("jpeg")), orientation);
+            Path target = photoLayout.variantPath(size, filename);
+            Files.createDirectories(target.getParent());
+
+            Path part = Files.createTempFile(target.getParent(), ".variant-", ".part");
+            try {
+                write(resized, part, format);
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                photoHotCache.invalidate(target);
+            } finally {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    /**
+     * Décodage de l'original, après contrôle des dimensions lues dans l'en-tête.
+     */
+    private BufferedImage read(Path source, String filename) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                throw new IOException("Format d'image non pris en charge : " + filename);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("Image trop grande : " + width + "x" + height + " px (" + filename + ")");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Réduction (jamais d'agrandissement) pour que le plus grand côté fasse {@code size} px.
+     */
+    private static BufferedImage resize(BufferedImage source, int size, boolean keepAlpha) {
+        double scale = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage target = new BufferedImage(width, height,
+                keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private void write(BufferedImage image, Path target, String format) throws IOException {
+        if (!format.equals("jpeg")) {
+            ImageIO.write(image, format, target.toFile());
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Format de réencodage, cohérent avec l'extension du fichier (servie telle quelle) ;
+     * vide si aucun writer ImageIO ne correspond à cette extension.
+     */
+    static Optional<String> outputFormat(String filename) {
+        String lower = filename.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return Optional.of("jpeg");
+        if (lower.endsWith(".png")) return Optional.of("png");
+        if (lower.endsWith(".gif")) return Optional.of("gif");
+        return Optional.empty();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,88 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import training.afpa.cda24060.squartrbnb.entity.Role;
+import training.afpa.cda24060.squartrbnb.repository.RoleRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Catalogue des rôles en mémoire.
+ *
+ * La table "role" ne change quasiment jamais : elle est chargée au démarrage dans deux
+ * maps immuables (id → Role, nom → Role), remplacées d'un bloc à chaque rafraîchissement
+ * (planifié via app.roles.refresh-interval, ou explicite via {@link #refresh()}).
+ * Les lectures ne touchent donc jamais la base.
+ *
+ * Les Role retournés sont détachés : ils servent uniquement de référence (clé étrangère)
+ * lors de l'enregistrement d'un utilisateur.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class RoleCatalog {
+
+    public static final String DEFAULT_ROLE = "UTILISATEUR";
+
+    private final RoleRepository roleRepository;
+
+    /** null tant que le premier chargement n'a pas eu lieu */
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(Map<Integer, Role> byId, Map<String, Role> byName) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        refresh();
+    }
+
+    /**
+     * Recharge toute la table. À appeler après toute écriture de rôle faite par l'application.
+     */
+    @Scheduled(initialDelayString = "${app.roles.refresh-interval:PT10M}",
+               fixedDelayString = "${app.roles.refresh-interval:PT10M}")
+    public void refresh() {
+        List<Role> roles = roleRepository.findAll();
+        Map<Integer, Role> byId = roles.stream()
+                .collect(Collectors.toUnmodifiableMap(Role::getId, Function.identity()));
+        Map<String, Role> byName = roles.stream()
+                .collect(Collectors.toUnmodifiableMap(Role::getName, Function.identity()));
+        snapshot = new Snapshot(byId, byName);
+        log.info("Catalogue des rôles chargé : {} rôle(s)", roles.size());
+    }
+
+    public Optional<Role> findById(Integer id) {
+        return Optional.ofNullable(current().byId().get(id));
+    }
+
+    public Optional<Role> findByName(String name) {
+        return Optional.ofNullable(current().byName().get(name));
+    }
+
+    /**
+     * Snapshot courant ; chargé à la demande si une requête arrive avant la fin du démarrage.
+     */
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    public Role defaultRole() {
+        return findByName(DEFAULT_ROLE)
+                .orElseThrow(() -> new IllegalStateException("Rôle " + DEFAULT_ROLE + " introuvable"));
+    }
+}
@@ -0,0 +1,147 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache mémoire (borné + TTL) des utilisateurs lus par id, email ou username.
+ *
+ * Le cache principal est indexé par id ; deux index secondaires email → id et username → id
+ * pointent dessus. Une entrée d'index est toujours revérifiée contre l'utilisateur en cache,
+ * une entrée obsolète (email ou username modifié) est donc simplement traitée comme un miss :
+ * invalider l'id suffit.
+ *
+ * Pour éviter qu'une lecture concurrente ne remette en cache une valeur périmée après une
+ * invalidation, chaque lecture mémorise la {@link #generation()} avant d'interroger la base ;
+ * {@link #put(long, UserResponseDTO)} est ignoré si une invalidation a eu lieu entre-temps.
+ *
+ * Statistiques hits/miss/évictions exposées via Micrometer (actuator /metrics et /prometheus).
+ */
+@Component
+public class UserCache {
+
+    private final Cache<Integer, UserResponseDTO> byId;
+    private final Cache<String, Integer> idByEmail;
+    private final Cache<String, Integer> idByUsername;
+    private final AtomicLong generation = new AtomicLong();
+
+    public UserCache(MeterRegistry meterRegistry,
+                     @Value("${app.users.cache.max-size:10000}") long maxSize,
+                     @Value("${app.users.cache.ttl:PT5M}") Duration ttl) {
+        this.byId = newCache(maxSize, ttl);
+        this.idByEmail = newCache(maxSize, ttl);
+        this.idByUsername = newCache(maxSize, ttl);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "users.byId");
+        CaffeineCacheMetrics.monitor(meterRegistry, idByEmail, "users.byEmail");
+        CaffeineCacheMetrics.monitor(meterRegistry, idByUsername, "users.byUsername");
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maxSize, Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    // ── Lecture ──────────────────────────────────────────────────────────────
+
+    public Optional<UserResponseDTO> getById(Integer id) {
+        return Optional.ofNullable(byId.getIfPresent(id));
+    }
+
+    public Optional<UserResponseDTO> getByEmail(String email) {
+        Integer id = idByEmail.getIfPresent(normalize(email));
+        return id == null ? Optional.empty() : getById(id).filter(u -> email.equalsIgnoreCase(u.getEmail()));
+    }
+
+    public Optional<UserResponseDTO> getByUsername(String username) {
+        Integer id = idByUsername.getIfPresent(normalize(username));
+        return id == null ? Optional.empty() : getById(id).filter(u -> username.equalsIgnoreCase(u.getUsername()));
+    }
+
+    // ── Écriture ─────────────────────────────────────────────────────────────
+
+    /**
+     * Génération courante, à lire AVANT d'interroger la base.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Met en cache un utilisateur lu en base, sauf si une invalidation a eu lieu depuis
+     * {@code readGeneration}.
+     *
+     * La génération est revérifiée dans le compute de l'entrée : une invalidation incrémente
+     * la génération puis retire l'entrée, retrait qui attend la fin du compute. Soit le compute
+     * voit la nouvelle génération et n'écrit rien, soit il écrit avant et le retrait l'efface.
+     */
+    public void put(long readGeneration, UserResponseDTO user) {
+        if (user == null || user.getId() == null || generation.get() != readGeneration) return;
+
+        UserResponseDTO cached = byId.asMap().compute(user.getId(),
+                (id, current) -> generation.get() == readGeneration ? user : current);
+        if (cached != user) return;
+        if (user.getEmail() != null)    idByEmail.put(normalize(user.getEmail()), user.getId());
+        if (user.getUsername() != null) idByUsername.put(normalize(user.getUsername()), user.getId());
+    }
+
+    public void invalidate(Integer id) {
+        generation.incrementAndGet();
+        byId.invalidate(id);
+    }
+
+    /**
+     * Invalide l'utilisateur après le commit de la transaction courante
+     * (immédiatement s'il n'y a pas de transaction).
+     */
+    public void invalidateAfterCommit(Integer id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(id);
+            }
+        });
+    }
+
+    public void invalidateAllAfterCommit(Collection<Integer> ids) {
+        if (ids.isEmpty()) return;
+        Runnable invalidation = () -> {
+            generation.incrementAndGet();
+            byId.invalidateAll(ids);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidation.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidation.run();
+            }
+        });
+    }
+
+    private static String normalize(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+}
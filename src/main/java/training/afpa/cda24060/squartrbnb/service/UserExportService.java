@@ -0,0 +1,113 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+import training.afpa.cda24060.squartrbnb.repository.UserRepository;
+import training.afpa.cda24060.squartrbnb.utils.CsvUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Export de tous les utilisateurs en NDJSON ou CSV, à mémoire constante.
+ *
+ * La table est parcourue par blocs keyset (id > dernier id lu) : chaque bloc est lu dans
+ * sa propre transaction courte, puis écrit sur le flux de sortie une fois la connexion
+ * rendue au pool. Un client lent ne bloque donc jamais une connexion Hikari, et le
+ * contexte de persistance est vidé à chaque bloc.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class UserExportService {
+
+    private static final byte[] NEW_LINE = "\n".getBytes(StandardCharsets.UTF_8);
+    private static final String CSV_HEADER = "id,username,nom,prenom,email,dateNaissance,photoPath,roleId,roleName\n";
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.users.export.chunk-size:1000}")
+    private int chunkSize;
+
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() { return contentType; }
+
+        public static Format parse(String value) {
+            try {
+                return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Format d'export inconnu : '" + value + "' (attendu : ndjson ou csv)");
+            }
+        }
+    }
+
+    /**
+     * Écrit tous les utilisateurs sur {@code out}, bloc par bloc.
+     *
+     * @return le nombre d'utilisateurs exportés
+     */
+    public long export(Format format, OutputStream out) throws IOException {
+        log.info("Export des utilisateurs au format {}", format);
+
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+
+        long count = 0;
+        int afterId = 0;
+        while (true) {
+            // Transaction courte (celle du repository) : la connexion est rendue avant l'écriture
+            List<UserResponseDTO> chunk = userRepository.findViewsAfter(afterId, Limit.of(chunkSize));
+            if (chunk.isEmpty()) break;
+
+            for (UserResponseDTO dto : chunk) {
+                if (format == Format.CSV) {
+                    out.write(toCsvLine(dto).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    out.write(objectMapper.writeValueAsBytes(dto));
+                    out.write(NEW_LINE);
+                }
+            }
+            out.flush();
+
+            count += chunk.size();
+            afterId = chunk.get(chunk.size() - 1).getId();
+            if (chunk.size() < chunkSize) break;
+        }
+
+        log.info("Export terminé : {} utilisateurs", count);
+        return count;
+    }
+
+    private String toCsvLine(UserResponseDTO dto) {
+        UserResponseDTO.RoleResponseDTO role = dto.getRole();
+        return String.join(",",
+                CsvUtils.escape(dto.getId()),
+                CsvUtils.escape(dto.getUsername()),
+                CsvUtils.escape(dto.getNom()),
+                CsvUtils.escape(dto.getPrenom()),
+                CsvUtils.escape(dto.getEmail()),
+                CsvUtils.escape(dto.getDateNaissance()),
+                CsvUtils.escape(dto.getPhotoPath()),
+                CsvUtils.escape(role != null ? role.getId() : null),
+                CsvUtils.escape(role != null ? role.getName() : null)) + "\n";
+    }
+}
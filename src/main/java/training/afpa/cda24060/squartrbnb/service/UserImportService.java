@@ -0,0 +1,362 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+import training.afpa.cda24060.squartrbnb.dto.UserCreateDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserImportResultDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserImportResultDTO.RowResult;
+import training.afpa.cda24060.squartrbnb.dto.UserImportResultDTO.Status;
+import training.afpa.cda24060.squartrbnb.entity.Role;
+import training.afpa.cda24060.squartrbnb.entity.User;
+import training.afpa.cda24060.squartrbnb.exception.ServiceUnavailableException;
+import training.afpa.cda24060.squartrbnb.repository.UserRepository;
+import training.afpa.cda24060.squartrbnb.utils.CsvUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Import en masse d'utilisateurs depuis un tableau JSON ou un fichier CSV lu en flux.
+ *
+ * Les lignes sont traitées par lots (app.users.import.batch-size) :
+ *  1. validation (Bean Validation + rôle + doublons dans le fichier) ;
+ *  2. une requête par champ pour repérer les emails / usernames déjà pris ;
+ *  3. hachage des mots de passe en parallèle ({@link PasswordHashingService}) ;
+ *  4. INSERT JDBC en batch dans une transaction courte.
+ *
+ * L'id en IDENTITY empêche Hibernate de regrouper les INSERT : le lot passe donc par JDBC
+ * (rewriteBatchedStatements côté MySQL). Si le lot échoue malgré tout (doublon inséré en
+ * parallèle), il est rejoué ligne par ligne pour attribuer l'erreur à la bonne ligne.
+ * Un lot refusé par le pool de hachage saturé ne fait pas échouer l'import : ses lignes
+ * valides sont rendues en {@link Status#RETRY}, les lots précédents restant créés.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class UserImportService {
+
+    private static final String INSERT_SQL = "INSERT INTO users "
+            + "(username, nom, prenom, email, date_naissance, photo_path, password_hash, role_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final UserRepository userRepository;
+    private final RoleCatalog roleCatalog;
+    private final PasswordHashingService passwordHashing;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${app.users.import.batch-size:500}")
+    private int batchSize;
+
+    public enum Format { JSON, CSV }
+
+    /** Ligne lue dans le fichier ; {@code error} renseigné si elle n'a pas pu être lue */
+    private record ParsedRow(int row, UserCreateDTO dto, String error) {
+    }
+
+    /** Ligne valide prête à être insérée */
+    private record PendingRow(int row, UserCreateDTO dto, Role role, String passwordHash) {
+    }
+
+    public UserImportResultDTO importUsers(InputStream in, Format format) throws IOException {
+        log.info("Import d'utilisateurs ({})", format);
+        Import context = new Import();
+
+        List<ParsedRow> batch = new ArrayList<>(batchSize);
+        Consumer<ParsedRow> collector = row -> {
+            batch.add(row);
+            if (batch.size() >= batchSize) {
+                processBatch(batch, context);
+                batch.clear();
+            }
+        };
+
+        if (format == Format.CSV) {
+            readCsv(in, collector);
+        } else {
+            readJson(in, collector);
+        }
+        if (!batch.isEmpty()) processBatch(batch, context);
+
+        int created = (int) context.results.stream().filter(r -> r.getStatus() == Status.CREATED).count();
+        log.info("Import terminé : {} ligne(s), {} créée(s)", context.results.size(), created);
+        return UserImportResultDTO.builder()
+                .total(context.results.size())
+                .created(created)
+                .failed(context.results.size() - created)
+                .rows(context.results)
+                .build();
+    }
+
+    /** État d'un import : résultats et valeurs déjà vues dans le fichier */
+    private static final class Import {
+        final List<RowResult> results = new ArrayList<>();
+        final Set<String> seenEmails = new HashSet<>();
+        final Set<String> seenUsernames = new HashSet<>();
+    }
+
+    // ── Lecture ──────────────────────────────────────────────────────────────
+
+    private void readJson(InputStream in, Consumer<ParsedRow> collector) {
+        // Un élément à la fois au milieu du tableau : la suite n'est pas un « jeton en trop »
+        ObjectReader rowReader = objectMapper.reader().without(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Le corps doit être un tableau JSON d'utilisateurs.");
+            }
+            int row = 0;
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token == null) {
+                    throw new IllegalArgumentException("JSON invalide : tableau non terminé.");
+                }
+                row++;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    collector.accept(new ParsedRow(row, null, "Ligne illisible : objet JSON attendu."));
+                    continue;
+                }
+                JsonNode node = rowReader.readTree(parser);
+                try {
+                    collector.accept(new ParsedRow(row, objectMapper.treeToValue(node, UserCreateDTO.class), null));
+                } catch (JacksonException e) {
+                    collector.accept(new ParsedRow(row, null, "Ligne illisible : " + e.getOriginalMessage()));
+                }
+            }
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("JSON invalide : " + e.getOriginalMessage());
+        }
+    }
+
+    private void readCsv(InputStream in, Consumer<ParsedRow> collector) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        if (header == null) return;
+
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = CsvUtils.parseLine(header.replace("\uFEFF", ""));
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim(), i);
+        }
+
+        int row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) continue;
+            row++;
+            List<String> fields = CsvUtils.parseLine(line);
+            try {
+                String roleId = field(fields, columns, "roleId");
+                String dateNaissance = field(fields, columns, "dateNaissance");
+                UserCreateDTO dto = UserCreateDTO.builder()
+                        .username(field(fields, columns, "username"))
+                        .nom(field(fields, columns, "nom"))
+                        .prenom(field(fields, columns, "prenom"))
+                        .email(field(fields, columns, "email"))
+                        .dateNaissance(dateNaissance != null ? LocalDate.parse(dateNaissance) : null)
+                        .photoPath(field(fields, columns, "photoPath"))
+                        .password(field(fields, columns, "password"))
+                        .roleId(roleId != null ? Integer.valueOf(roleId) : null)
+                        .build();
+                collector.accept(new ParsedRow(row, dto, null));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                collector.accept(new ParsedRow(row, null, "Ligne illisible : " + e.getMessage()));
+            }
+        }
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size()) return null;
+        String value = fields.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    // ── Traitement d'un lot ──────────────────────────────────────────────────
+
+    private void processBatch(List<ParsedRow> batch, Import context) {
+        Map<Integer, RowResult> results = new HashMap<>();
+        List<ParsedRow> candidates = new ArrayList<>();
+
+        for (ParsedRow row : batch) {
+            String error = row.error() != null ? row.error() : validate(row.dto(), context);
+            if (error != null) results.put(row.row(), failed(row.row(), error));
+            else candidates.add(row);
+        }
+
+        // Emails / usernames déjà présents en base : une requête par champ pour tout le lot
+        Set<String> takenEmails = lowerCase(userRepository.findExistingEmails(
+                candidates.stream().map(r -> r.dto().getEmail()).toList()));
+        Set<String> takenUsernames = lowerCase(userRepository.findExistingUsernames(
+                candidates.stream().map(r -> r.dto().getUsername()).toList()));
+
+        List<ParsedRow> accepted = new ArrayList<>();
+        for (ParsedRow row : candidates) {
+            if (takenEmails.contains(lower(row.dto().getEmail()))) {
+                results.put(row.row(), failed(row.row(), "Email déjà utilisé: " + row.dto().getEmail()));
+            } else if (takenUsernames.contains(lower(row.dto().getUsername()))) {
+                results.put(row.row(), failed(row.row(), "Username déjà utilisé: " + row.dto().getUsername()));
+            } else {
+                accepted.add(row);
+            }
+        }
+
+        // Hachage BCrypt en parallèle sur le pool dédié : c'est l'étape la plus coûteuse du lot
+        List<String> hashes;
+        try {
+            hashes = passwordHashing.hashAll(accepted.stream().map(r -> r.dto().getPassword()).toList());
+        } catch (ServiceUnavailableException e) {
+            log.warn("Lot d'import non haché ({}) : {} ligne(s) à renvoyer", e.getMessage(), accepted.size());
+            accepted.forEach(row -> results.put(row.row(), RowResult.builder().row(row.row())
+                    .status(Status.RETRY).error(e.getMessage()).build()));
+            accepted.clear();
+            hashes = List.of();
+        }
+        List<PendingRow> pending = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            ParsedRow row = accepted.get(i);
+            pending.add(new PendingRow(row.row(), row.dto(), resolveRole(row.dto().getRoleId()), hashes.get(i)));
+        }
+
+        insert(pending, results);
+
+        batch.forEach(row -> context.results.add(results.get(row.row())));
+    }
+
+    /**
+     * Validation d'une ligne ; retourne le message d'erreur ou null si elle est valide.
+     */
+    private String validate(UserCreateDTO dto, Import context) {
+        Set<ConstraintViolation<UserCreateDTO>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(v -> v.getPropertyPath() + " : " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(" ; "));
+        }
+        if (dto.getRoleId() != null && roleCatalog.findById(dto.getRoleId()).isEmpty()) {
+            return "Rôle inexistant : " + dto.getRoleId();
+        }
+        if (!context.seenEmails.add(lower(dto.getEmail()))) {
+            return "Email en double dans le fichier: " + dto.getEmail();
+        }
+        if (!context.seenUsernames.add(lower(dto.getUsername()))) {
+            return "Username en double dans le fichier: " + dto.getUsername();
+        }
+        return null;
+    }
+
+    private void insert(List<PendingRow> pending, Map<Integer, RowResult> results) {
+        if (pending.isEmpty()) return;
+        try {
+            List<Integer> ids = transactionTemplate.execute(status -> insertBatch(pending));
+            for (int i = 0; i < pending.size(); i++) {
+                int row = pending.get(i).row();
+                results.put(row, RowResult.builder().row(row).status(Status.CREATED).id(ids.get(i)).build());
+            }
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Lot d'import rejeté ({}), insertion ligne par ligne", e.getMostSpecificCause().getMessage());
+            for (PendingRow row : pending) {
+                try {
+                    Integer id = transactionTemplate.execute(status -> insertBatch(List.of(row)).get(0));
+                    results.put(row.row(), RowResult.builder().row(row.row()).status(Status.CREATED).id(id).build());
+                } catch (DataIntegrityViolationException rowError) {
+                    results.put(row.row(), failed(row.row(), conflictMessage(rowError, row.dto())));
+                }
+            }
+        }
+    }
+
+    private List<Integer> insertBatch(List<PendingRow> rows) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (PendingRow row : rows) {
+                    UserCreateDTO dto = row.dto();
+                    ps.setString(1, dto.getUsername());
+                    ps.setString(2, dto.getNom());
+                    ps.setString(3, dto.getPrenom());
+                    ps.setString(4, dto.getEmail());
+                    ps.setDate(5, Date.valueOf(dto.getDateNaissance()));
+                    if (dto.getPhotoPath() != null) ps.setString(6, dto.getPhotoPath());
+                    else ps.setNull(6, Types.VARCHAR);
+                    ps.setString(7, row.passwordHash());
+                    ps.setInt(8, row.role().getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Integer> ids = new ArrayList<>(rows.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) ids.add(keys.getInt(1));
+                }
+                return ids;
+            }
+        });
+    }
+
+    private Role resolveRole(Integer roleId) {
+        return Optional.ofNullable(roleId).flatMap(roleCatalog::findById).orElseGet(roleCatalog::defaultRole);
+    }
+
+    /**
+     * Message d'une ligne rejetée, d'après le nom de contrainte ; pour un index au nom d'origine
+     * (base antérieure à uk_users_*), d'après une requête d'existence.
+     */
+    private String conflictMessage(DataIntegrityViolationException e, UserCreateDTO dto) {
+        String message = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        if (message.contains(User.UK_EMAIL))    return "Email déjà utilisé: " + dto.getEmail();
+        if (message.contains(User.UK_USERNAME)) return "Username déjà utilisé: " + dto.getUsername();
+        if (userRepository.existsByEmail(dto.getEmail()))       return "Email déjà utilisé: " + dto.getEmail();
+        if (userRepository.existsByUsername(dto.getUsername())) return "Username déjà utilisé: " + dto.getUsername();
+        return "Conflit lors de la création de l'utilisateur";
+    }
+
+    private static RowResult failed(int row, String error) {
+        return RowResult.builder().row(row).status(Status.FAILED).error(error).build();
+    }
+
+    private static Set<String> lowerCase(Collection<String> values) {
+        return values.stream().map(UserImportService::lower).collect(Collectors.toSet());
+    }
+
+    private static String lower(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
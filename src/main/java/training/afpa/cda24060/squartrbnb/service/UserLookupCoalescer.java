@@ -0,0 +1,71 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+import training.afpa.cda24060.squartrbnb.exception.ServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Regroupement des lectures identiques simultanées ("single flight").
+ *
+ * Le premier appelant pour une clé exécute la requête dans son propre thread ; les appelants
+ * suivants arrivés pendant qu'elle est en cours attendent son résultat au lieu de lancer
+ * la même requête et d'occuper une connexion du pool. Une exception (ex : utilisateur
+ * introuvable) est propagée à tous les appelants regroupés.
+ *
+ * L'attente est bornée par app.users.coalescing.timeout : au-delà, l'appelant reçoit une
+ * {@link ServiceUnavailableException} (503) plutôt que de rester bloqué.
+ */
+@Component
+public class UserLookupCoalescer {
+
+    private final ConcurrentHashMap<String, CompletableFuture<UserResponseDTO>> inFlight = new ConcurrentHashMap<>();
+    private final Duration timeout;
+
+    public UserLookupCoalescer(@Value("${app.users.coalescing.timeout:PT5S}") Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public UserResponseDTO execute(String key, Supplier<UserResponseDTO> loader) {
+        CompletableFuture<UserResponseDTO> mine = new CompletableFuture<>();
+        CompletableFuture<UserResponseDTO> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            UserResponseDTO result = loader.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private UserResponseDTO await(CompletableFuture<UserResponseDTO> pending) {
+        try {
+            return pending.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("La lecture de l'utilisateur a dépassé le délai de " + timeout.toMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Lecture de l'utilisateur interrompue");
+        }
+    }
+}
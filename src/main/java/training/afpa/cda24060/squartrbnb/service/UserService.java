@@ -1,139 +1,370 @@
 package training.afpa.cda24060.squartrbnb.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import training.afpa.cda24060.squartrbnb.dto.UserBatchResponseDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserBulkDeleteResultDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserCreateDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserMapper;
+import training.afpa.cda24060.squartrbnb.dto.UserPageDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserUpdateDTO;
 import training.afpa.cda24060.squartrbnb.entity.Role;
 import training.afpa.cda24060.squartrbnb.entity.User;
 import training.afpa.cda24060.squartrbnb.exception.DataConflictException;
 import training.afpa.cda24060.squartrbnb.exception.ResourceNotFoundException;
-import training.afpa.cda24060.squartrbnb.repository.RoleRepository;
 import training.afpa.cda24060.squartrbnb.repository.UserRepository;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
+/**
+ * Les écritures qui hachent un mot de passe (création, mise à jour) le font avant d'ouvrir la
+ * transaction, via le {@link PasswordHashingService} : la connexion n'est empruntée que pour
+ * les requêtes SQL, exécutées dans un {@link TransactionTemplate}.
+ *
+ * Chaque méthode publique est chronométrée (timer user.service, tags class/method).
+ */
 @Service
+@Timed(value = "user.service", description = "Temps passé dans UserService")
 @RequiredArgsConstructor
 @Log4j2
-@Transactional
 public class UserService {
 
+    /** Taille maximale d'une clause IN pour les opérations groupées */
+    static final int BULK_CHUNK_SIZE = 1_000;
+
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
-    private final RoleRepository roleRepository;
+    private final PasswordHashingService passwordHashing;
+    private final TransactionTemplate transactionTemplate;
+    private final RoleCatalog roleCatalog;
     private final UserMapper userMapper;
+    private final UserCache userCache;
+    private final UserLookupCoalescer lookupCoalescer;
 
-    @Transactional(readOnly = true)
+    /**
+     * Lectures unitaires : servies par le {@link UserCache} quand c'est possible.
+     * Propagation SUPPORTS : aucune transaction (donc aucune connexion) n'est ouverte tant
+     * que le cache répond, seul l'appel au repository en cas de miss en ouvre une.
+     * Les miss simultanés sur la même clé sont regroupés par le {@link UserLookupCoalescer}.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public UserResponseDTO getUserById(Integer id) {
-        log.info("Recherche utilisateur id={}", id);
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Utilisateur", "id", id));
-        return userMapper.toResponseDTO(user);
+        return userCache.getById(id).orElseGet(() ->
+                lookupCoalescer.execute("id:" + id, () -> {
+                    log.info("Recherche utilisateur id={}", id);
+                    long generation = userCache.generation();
+                    UserResponseDTO user = userRepository.findViewById(id)
+                            .orElseThrow(() -> new ResourceNotFoundException("Utilisateur", "id", id));
+                    userCache.put(generation, user);
+                    return user;
+                }));
     }
 
+    /**
+     * Lecture groupée : les ids absents du cache sont lus par blocs de {@value #BULK_CHUNK_SIZE}
+     * en une requête IN (rôle joint). L'ordre de la demande est conservé, les doublons ignorés
+     * et les ids inexistants listés dans {@code missing} sans faire échouer l'appel.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public UserBatchResponseDTO getUsersByIds(Collection<Integer> ids) {
+        List<Integer> requested = ids.stream().filter(Objects::nonNull).distinct().toList();
+        log.info("Lecture groupée de {} utilisateur(s)", requested.size());
+
+        Map<Integer, UserResponseDTO> found = new HashMap<>(requested.size() * 2);
+        List<Integer> toLoad = new ArrayList<>();
+        for (Integer id : requested) {
+            userCache.getById(id).ifPresentOrElse(u -> found.put(id, u), () -> toLoad.add(id));
+        }
+
+        long generation = userCache.generation();
+        for (int from = 0; from < toLoad.size(); from += BULK_CHUNK_SIZE) {
+            List<Integer> chunk = toLoad.subList(from, Math.min(from + BULK_CHUNK_SIZE, toLoad.size()));
+            for (UserResponseDTO user : userRepository.findViewsByIdIn(chunk)) {
+                found.put(user.getId(), user);
+                userCache.put(generation, user);
+            }
+        }
+
+        List<UserResponseDTO> users = new ArrayList<>(found.size());
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : requested) {
+            UserResponseDTO user = found.get(id);
+            if (user != null) users.add(user);
+            else missing.add(id);
+        }
+        return UserBatchResponseDTO.builder().users(users).missing(missing).build();
+    }
+
+    /**
+     * Liste non paginée, conservée pour compatibilité mais plafonnée à {@code max} utilisateurs.
+     */
     @Transactional(readOnly = true)
-    public List<UserResponseDTO> getAllUsers() {
-        log.info("Récupération de tous les utilisateurs");
-        return userRepository.findAll().stream()
-                .map(userMapper::toResponseDTO)
-                .toList();
+    public List<UserResponseDTO> getAllUsers(int max) {
+        log.info("Récupération des utilisateurs (max={})", max);
+        return userRepository.findViewsAfter(0, Limit.of(max));
     }
 
+    /**
+     * Page d'utilisateurs triés par id, à partir du curseur {@code after} (null = première page).
+     * Une ligne supplémentaire est lue pour savoir s'il existe une page suivante.
+     */
+    @Transactional(readOnly = true)
+    public UserPageDTO getUsersPage(String after, int limit) {
+        int afterId = decodeCursor(after);
+        log.info("Récupération d'une page d'utilisateurs (après id={}, limit={})", afterId, limit);
+
+        List<UserResponseDTO> rows = userRepository.findViewsAfter(afterId, Limit.of(limit + 1));
+        boolean hasNext = rows.size() > limit;
+        List<UserResponseDTO> content = hasNext ? rows.subList(0, limit) : rows;
+
+        return UserPageDTO.builder()
+                .content(content)
+                .limit(limit)
+                .nextCursor(hasNext ? encodeCursor(content.get(content.size() - 1).getId()) : null)
+                .build();
+    }
+
+    /**
+     * Création en une seule requête (INSERT) : l'unicité de l'email et du username n'est pas
+     * vérifiée au préalable, ce sont les contraintes de la table qui tranchent. La violation
+     * éventuelle est traduite en {@link DataConflictException} selon la contrainte concernée.
+     */
     public UserResponseDTO createUser(UserCreateDTO dto) {
         log.info("Création utilisateur: {}", dto.getUsername());
 
-        if (userRepository.existsByEmail(dto.getEmail())) {
-            throw new DataConflictException("Email déjà utilisé: " + dto.getEmail());
-        }
-        if (userRepository.existsByUsername(dto.getUsername())) {
-            throw new DataConflictException("Username déjà utilisé: " + dto.getUsername());
-        }
-
         User user = userMapper.toEntity(dto);
-        user.setPassword(passwordEncoder.encode(dto.getPassword()));
+        user.setPassword(passwordHashing.hash(dto.getPassword()));
         user.setRole(resolveRole(dto.getRoleId()));
 
         try {
-            User saved = userRepository.save(user);
+            User saved = transactionTemplate.execute(status -> userRepository.saveAndFlush(user));
             log.info("Utilisateur créé id={}", saved.getId());
             return userMapper.toResponseDTO(saved);
         } catch (DataIntegrityViolationException e) {
-            throw new DataConflictException("Conflit lors de la création de l'utilisateur");
+            throw toConflict(e, null, dto.getEmail(), dto.getUsername(), "Conflit lors de la création de l'utilisateur");
         }
     }
 
+    /**
+     * Mise à jour : lecture de l'utilisateur puis UPDATE, sans requête d'existence préalable
+     * (voir {@link #createUser(UserCreateDTO)}). Le mot de passe est haché hors transaction.
+     */
     public UserResponseDTO updateUser(Integer id, UserUpdateDTO dto) {
         log.info("Mise à jour utilisateur id={}", id);
 
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Utilisateur", "id", id));
+        String passwordHash = hasPassword(dto) ? passwordHashing.hash(dto.getPassword()) : null;
+        Role role = dto.getRoleId() != null ? resolveRole(dto.getRoleId()) : null;
 
-        if (dto.getEmail() != null && !dto.getEmail().equals(user.getEmail())
-                && userRepository.existsByEmail(dto.getEmail())) {
-            throw new DataConflictException("Email déjà utilisé: " + dto.getEmail());
-        }
-        if (dto.getUsername() != null && !dto.getUsername().equals(user.getUsername())
-                && userRepository.existsByUsername(dto.getUsername())) {
-            throw new DataConflictException("Username déjà utilisé: " + dto.getUsername());
+        try {
+            return transactionTemplate.execute(status -> {
+                User user = userRepository.findById(id)
+                        .orElseThrow(() -> new ResourceNotFoundException("Utilisateur", "id", id));
+
+                userMapper.updateEntityFromDTO(dto, user);
+                if (passwordHash != null) {
+                    user.setPassword(passwordHash);
+                    log.info("Mot de passe mis à jour pour id={}", id);
+                }
+                if (role != null) {
+                    user.setRole(role);
+                }
+
+                User updated = userRepository.saveAndFlush(user);
+                userCache.invalidateAfterCommit(id);
+                log.info("Utilisateur mis à jour id={}", updated.getId());
+                return userMapper.toResponseDTO(updated);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw toConflict(e, id, dto.getEmail(), dto.getUsername(), "Conflit lors de la mise à jour de l'utilisateur");
         }
+    }
 
-        userMapper.updateEntityFromDTO(dto, user);
+    /**
+     * Mise à jour partielle en une seule requête : UPDATE des seules colonnes fournies,
+     * sans charger l'entité. 404 si aucune ligne n'est modifiée.
+     */
+    public void patchUser(Integer id, UserUpdateDTO dto) {
+        log.info("Mise à jour partielle utilisateur id={}", id);
 
-        if (dto.getPassword() != null && !dto.getPassword().isEmpty()) {
-            user.setPassword(passwordEncoder.encode(dto.getPassword()));
-            log.info("Mot de passe mis à jour pour id={}", id);
+        Map<String, Object> changes = userMapper.toPatchChanges(dto);
+        if (hasPassword(dto)) {
+            changes.put("password", passwordHashing.hash(dto.getPassword()));
         }
         if (dto.getRoleId() != null) {
-            user.setRole(resolveRole(dto.getRoleId()));
+            changes.put("role", resolveRole(dto.getRoleId()));
+        }
+
+        if (changes.isEmpty()) {
+            if (!userRepository.existsById(id)) {
+                throw new ResourceNotFoundException("Utilisateur", "id", id);
+            }
+            return;
         }
 
         try {
-            User updated = userRepository.save(user);
-            log.info("Utilisateur mis à jour id={}", updated.getId());
-            return userMapper.toResponseDTO(updated);
+            transactionTemplate.executeWithoutResult(status -> {
+                if (userRepository.updateColumns(id, changes) == 0) {
+                    throw new ResourceNotFoundException("Utilisateur", "id", id);
+                }
+                userCache.invalidateAfterCommit(id);
+            });
         } catch (DataIntegrityViolationException e) {
-            throw new DataConflictException("Conflit lors de la mise à jour de l'utilisateur");
+            throw toConflict(e, id, dto.getEmail(), dto.getUsername(), "Conflit lors de la mise à jour de l'utilisateur");
         }
+        log.info("Utilisateur mis à jour id={} (champs : {})", id, changes.keySet());
     }
 
+    /**
+     * Suppression en une seule requête : le nombre de lignes supprimées décide du 404.
+     */
+    @Transactional
     public void deleteUser(Integer id) {
         log.info("Suppression utilisateur id={}", id);
-        if (!userRepository.existsById(id)) {
+        if (userRepository.removeById(id) == 0) {
             throw new ResourceNotFoundException("Utilisateur", "id", id);
         }
-        userRepository.deleteById(id);
+        userCache.invalidateAfterCommit(id);
         log.info("Utilisateur supprimé id={}", id);
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Suppression groupée, par blocs de {@value #BULK_CHUNK_SIZE} ids : une requête pour
+     * repérer les ids existants, une requête DELETE ... IN (...) pour les supprimer.
+     */
+    @Transactional
+    public UserBulkDeleteResultDTO deleteUsers(Collection<Integer> ids) {
+        List<Integer> requested = ids.stream().filter(Objects::nonNull).distinct().toList();
+        log.info("Suppression groupée de {} utilisateur(s)", requested.size());
+
+        List<Integer> deleted = new ArrayList<>(requested.size());
+        for (int from = 0; from < requested.size(); from += BULK_CHUNK_SIZE) {
+            List<Integer> chunk = requested.subList(from, Math.min(from + BULK_CHUNK_SIZE, requested.size()));
+            List<Integer> existing = userRepository.findExistingIds(chunk);
+            if (!existing.isEmpty()) {
+                userRepository.removeAllByIdIn(existing);
+                deleted.addAll(existing);
+            }
+        }
+        userCache.invalidateAllAfterCommit(deleted);
+
+        Set<Integer> deletedSet = new HashSet<>(deleted);
+        List<Integer> missing = requested.stream().filter(id -> !deletedSet.contains(id)).toList();
+        log.info("Suppression groupée terminée : {} supprimé(s), {} introuvable(s)", deleted.size(), missing.size());
+        return UserBulkDeleteResultDTO.builder()
+                .deleted(requested.stream().filter(deletedSet::contains).toList())
+                .missing(missing)
+                .build();
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public UserResponseDTO getUserByEmail(String email) {
-        log.info("Recherche utilisateur email={}", email);
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("Utilisateur", "email", email));
-        return userMapper.toResponseDTO(user);
+        return userCache.getByEmail(email).orElseGet(() ->
+                lookupCoalescer.execute("email:" + email.toLowerCase(Locale.ROOT), () -> {
+                    log.info("Recherche utilisateur email={}", email);
+                    long generation = userCache.generation();
+                    UserResponseDTO user = userRepository.findViewByEmail(email)
+                            .orElseThrow(() -> new ResourceNotFoundException("Utilisateur", "email", email));
+                    userCache.put(generation, user);
+                    return user;
+                }));
     }
 
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public UserResponseDTO getUserByUsername(String username) {
-        log.info("Recherche utilisateur username={}", username);
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("Utilisateur", "username", username));
-        return userMapper.toResponseDTO(user);
+        return userCache.getByUsername(username).orElseGet(() ->
+                lookupCoalescer.execute("username:" + username.toLowerCase(Locale.ROOT), () -> {
+                    log.info("Recherche utilisateur username={}", username);
+                    long generation = userCache.generation();
+                    UserResponseDTO user = userRepository.findViewByUsername(username)
+                            .orElseThrow(() -> new ResourceNotFoundException("Utilisateur", "username", username));
+                    userCache.put(generation, user);
+                    return user;
+                }));
+    }
+
+    private static String encodeCursor(Integer id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return 0;
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return Integer.parseInt(decoded);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException hérite d'IllegalArgumentException
+            throw new IllegalArgumentException("Curseur de pagination invalide : " + cursor);
+        }
+    }
+
+    /**
+     * Traduit une violation de contrainte d'unicité en conflit métier, d'après le nom de la
+     * contrainte violée (uk_users_email / uk_users_username, cf. {@link User}).
+     *
+     * Une base créée avant ces noms garde ses index d'origine (ddl-auto=update ne les renomme
+     * pas) : pour un nom non reconnu, le champ en conflit est retrouvé par une requête
+     * d'existence, sur ce seul chemin d'échec.
+     *
+     * @param id utilisateur mis à jour, null pour une création
+     */
+    private DataConflictException toConflict(DataIntegrityViolationException e, Integer id,
+                                             String email, String username, String fallbackMessage) {
+        String constraint = violatedConstraint(e);
+        if (constraint != null && constraint.contains(User.UK_EMAIL)) {
+            return new DataConflictException("Email déjà utilisé: " + email);
+        }
+        if (constraint != null && constraint.contains(User.UK_USERNAME)) {
+            return new DataConflictException("Username déjà utilisé: " + username);
+        }
+        if (email != null && (id == null ? userRepository.existsByEmail(email)
+                                          : userRepository.existsByEmailAndIdNot(email, id))) {
+            return new DataConflictException("Email déjà utilisé: " + email);
+        }
+        if (username != null && (id == null ? userRepository.existsByUsername(username)
+                                             : userRepository.existsByUsernameAndIdNot(username, id))) {
+            return new DataConflictException("Username déjà utilisé: " + username);
+        }
+        log.warn("Violation de contrainte non reconnue ({}): {}", constraint, e.getMessage());
+        return new DataConflictException(fallbackMessage);
+    }
+
+    private static String violatedConstraint(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException cve && cve.getConstraintName() != null) {
+                return cve.getConstraintName().toLowerCase(Locale.ROOT);
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasPassword(UserUpdateDTO dto) {
+        return dto.getPassword() != null && !dto.getPassword().isEmpty();
     }
 
     private Role resolveRole(Integer roleId) {
         if (roleId != null) {
-            return roleRepository.findById(roleId)
+            return roleCatalog.findById(roleId)
                     .orElseThrow(() -> new ResourceNotFoundException("Rôle", "id", roleId));
         }
-        return roleRepository.findByName("UTILISATEUR")
-                .orElseThrow(() -> new IllegalStateException("Rôle UTILISATEUR introuvable"));
+        return roleCatalog.defaultRole();
     }
 }
\ No newline at end of file
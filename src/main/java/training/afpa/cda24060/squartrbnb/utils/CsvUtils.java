@@ -0,0 +1,66 @@
+package training.afpa.cda24060.squartrbnb.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Petites fonctions utilitaires pour le format CSV (RFC 4180).
+ */
+public final class CsvUtils {
+
+    private static final String FORMULA_START = "=+-@\t\r";
+
+    private CsvUtils() {
+    }
+
+    /**
+     * Échappe une valeur : entoure de guillemets si elle contient un séparateur,
+     * un guillemet ou un retour à la ligne, et double les guillemets internes.
+     *
+     * Un texte commençant par =, +, -, @, tabulation ou retour chariot serait interprété
+     * comme une formule par un tableur (injection de formule) : il est préfixé d'une
+     * apostrophe. Les nombres et dates ne sont pas concernés.
+     */
+    public static String escape(Object value) {
+        if (value == null) return "";
+        String s = value.toString();
+        if (value instanceof CharSequence && !s.isEmpty() && FORMULA_START.indexOf(s.charAt(0)) >= 0) {
+            s = "'" + s;
+        }
+        boolean needsQuotes = s.indexOf(',') >= 0 || s.indexOf('"') >= 0
+                || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+        return needsQuotes ? '"' + s.replace("\"", "\"\"") + '"' : s;
+    }
+
+    /**
+     * Découpe une ligne CSV en champs (guillemets et guillemets doublés gérés).
+     * Les champs sur plusieurs lignes ne sont pas supportés.
+     */
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,57 @@
+package training.afpa.cda24060.squartrbnb.utils;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Mode threads virtuels (profil "virtual", spring.threads.virtual.enabled=true).
+ *
+ * Spring Boot bascule alors sur des threads virtuels les requêtes Tomcat (donc UserController
+ * et PhotoController, upload compris), l'executor des tâches asynchrones et le scheduler.
+ * Cette configuration ajoute le plafond d'accès à la base : voir {@link ConcurrencyLimitedDataSource}.
+ *
+ * Le pool de hachage des mots de passe reste en threads plateforme : c'est du calcul pur,
+ * un thread virtuel n'y apporterait rien.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Log4j2
+public class VirtualThreadConfig {
+
+    @Bean
+    static BeanPostProcessor concurrencyLimitedDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof HikariDataSource hikari)) return bean;
+
+                int maxConcurrent = environment.getProperty("app.db.bulkhead.max-concurrent",
+                        Integer.class, hikari.getMaximumPoolSize());
+                Duration acquireTimeout = environment.getProperty("app.db.bulkhead.acquire-timeout",
+                        Duration.class, Duration.ofSeconds(2));
+                log.info("Threads virtuels : accès base limité à {} connexion(s) simultanée(s), attente max {}",
+                        maxConcurrent, acquireTimeout);
+                return new ConcurrencyLimitedDataSource(hikari, maxConcurrent, acquireTimeout);
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder dataSourceBulkheadMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConcurrencyLimitedDataSource limited) {
+                limited.bindTo(registry);
+            }
+        };
+    }
+}
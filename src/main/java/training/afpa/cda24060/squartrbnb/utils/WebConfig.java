@@ -1,12 +1,13 @@
 package training.afpa.cda24060.squartrbnb.utils;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.core.Ordered;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+import training.afpa.cda24060.squartrbnb.controller.PhotoFileHandler;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Map;
 
 /**
  * Configure Spring pour servir les fichiers uploadés depuis le disque.
@@ -16,20 +17,21 @@ import java.nio.file.Paths;
  *
  * Avec cette config :
  *   http://localhost:8080/uploads/users/uuid.jpg
- *   → sert le fichier depuis src/main/resources/static/uploads/users/uuid.jpg sur le disque
+ *   → sert le fichier depuis src/main/resources/static/uploads/users/uu/id/uuid.jpg sur le disque
+ *     (ou à plat dans uploads/users/ s'il n'a pas encore été migré, voir PhotoLayout)
+ *   http://localhost:8080/uploads/users/variants/128/uuid.jpg
+ *   → sert la variante 128 px, ou l'original tant qu'elle n'a pas été générée
+ *
+ * Le service (cache HTTP, ETag, Range, sendfile) est assuré par {@link PhotoFileHandler},
+ * placé avant les handlers de ressources statiques par défaut.
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
-    @Value("${app.upload.dir:src/main/resources/static/uploads/users}")
-    private String uploadDir;
-
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        Path uploadPath = Paths.get(uploadDir).toAbsolutePath();
-        String uploadAbsolutePath = uploadPath.toUri().toString();
-
-        registry.addResourceHandler("/uploads/users/**")
-       .addResourceLocations(uploadAbsolutePath + "/");
+    @Bean
+    public SimpleUrlHandlerMapping photoHandlerMapping(PhotoFileHandler photoFileHandler) {
+        SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping(Map.of("/uploads/users/**", photoFileHandler));
+        mapping.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return mapping;
     }
 }
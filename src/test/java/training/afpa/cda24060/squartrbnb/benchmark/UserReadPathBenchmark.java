@@ -0,0 +1,185 @@
+package training.afpa.cda24060.squartrbnb.benchmark;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import training.afpa.cda24060.squartrbnb.dto.UserMapper;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+import training.afpa.cda24060.squartrbnb.entity.User;
+import training.afpa.cda24060.squartrbnb.repository.UserRepository;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compare le chemin de lecture "entité + mapper" et la projection DTO sur 100 000 lignes.
+ *
+ * Mesure le temps et les octets alloués par le thread courant pour :
+ *  - un parcours complet de la table par pages keyset de 1000 lignes ;
+ *  - 10 000 lectures unitaires par id.
+ *
+ * Lancement : mvn test -Pbenchmark -Dtest=UserReadPathBenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserReadPathBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int PAGE_SIZE = 1_000;
+    private static final int LOOKUPS = 10_000;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static final String ENTITY_PAGE_QUERY =
+            "select u from User u join fetch u.role where u.id > :afterId order by u.id";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private EntityManager entityManager;
+    @Autowired private UserRepository userRepository;
+    @Autowired private UserMapper userMapper;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("delete from users");
+        jdbcTemplate.update("delete from role");
+        jdbcTemplate.update("insert into role (id, name) values (1, 'UTILISATEUR')");
+
+        List<Object[]> batch = new ArrayList<>(5_000);
+        for (int i = 1; i <= ROWS; i++) {
+            batch.add(new Object[]{
+                    i, "user" + i, "Nom" + i, "Prenom" + i, "user" + i + "@example.com",
+                    Date.valueOf(LocalDate.of(1990, 1, 1).plusDays(i % 5_000)),
+                    "uploads/users/" + i + ".jpg",
+                    "$2a$10$abcdefghijklmnopqrstuuQzWnq6m5fXQ5x1V8p1ZkC0sYH4p2eK",
+                    "remember-" + i, 1
+            });
+            if (batch.size() == 5_000) {
+                insert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) insert(batch);
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("insert into users (id, username, nom, prenom, email, date_naissance, "
+                + "photo_path, password_hash, remember_token, role_id) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", batch);
+    }
+
+    @Test
+    void fullScan_entityVersusProjection() {
+        Result entity = measure("Parcours complet (entité + mapper)", this::scanWithEntities);
+        Result projection = measure("Parcours complet (projection DTO)", this::scanWithProjection);
+
+        assertEquals(ROWS, entity.rows());
+        assertEquals(ROWS, projection.rows());
+        printComparison(entity, projection);
+    }
+
+    @Test
+    void lookupById_entityVersusProjection() {
+        Result entity = measure("Lecture par id (entité + mapper)", () -> {
+            int found = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                int id = 1 + (i * 7_919) % ROWS;
+                UserResponseDTO dto = transactionTemplate.execute(status ->
+                        userRepository.findById(id).map(userMapper::toResponseDTO).orElse(null));
+                if (dto != null) found++;
+            }
+            return found;
+        });
+        Result projection = measure("Lecture par id (projection DTO)", () -> {
+            int found = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                int id = 1 + (i * 7_919) % ROWS;
+                if (userRepository.findViewById(id).isPresent()) found++;
+            }
+            return found;
+        });
+
+        assertEquals(LOOKUPS, entity.rows());
+        assertEquals(LOOKUPS, projection.rows());
+        printComparison(entity, projection);
+    }
+
+    private int scanWithEntities() {
+        int count = 0;
+        int afterId = 0;
+        while (true) {
+            final int from = afterId;
+            List<UserResponseDTO> page = transactionTemplate.execute(status ->
+                    entityManager.createQuery(ENTITY_PAGE_QUERY, User.class)
+                            .setParameter("afterId", from)
+                            .setMaxResults(PAGE_SIZE)
+                            .getResultStream()
+                            .map(userMapper::toResponseDTO)
+                            .toList());
+            if (page == null || page.isEmpty()) return count;
+            count += page.size();
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private int scanWithProjection() {
+        int count = 0;
+        int afterId = 0;
+        while (true) {
+            List<UserResponseDTO> page = userRepository.findViewsAfter(afterId, Limit.of(PAGE_SIZE));
+            if (page.isEmpty()) return count;
+            count += page.size();
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    // ── Mesure ───────────────────────────────────────────────────────────────
+
+    private record Result(String label, int rows, double avgMillis, long avgAllocatedBytes) {
+    }
+
+    private Result measure(String label, IntSupplier work) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            work.getAsInt();
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long totalNanos = 0;
+        long totalBytes = 0;
+        int rows = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            rows = work.getAsInt();
+            totalNanos += System.nanoTime() - start;
+            totalBytes += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        }
+        return new Result(label, rows, totalNanos / 1e6 / MEASURED_ROUNDS, totalBytes / MEASURED_ROUNDS);
+    }
+
+    private void printComparison(Result baseline, Result candidate) {
+        System.out.printf("%n%-40s %10s %14s%n", "Chemin", "ms/tour", "Mo alloués");
+        for (Result r : List.of(baseline, candidate)) {
+            System.out.printf("%-40s %10.1f %14.1f%n", r.label(), r.avgMillis(), r.avgAllocatedBytes() / 1_048_576.0);
+        }
+        System.out.printf("Gain : x%.2f en temps, x%.2f en allocation%n%n",
+                baseline.avgMillis() / candidate.avgMillis(),
+                (double) baseline.avgAllocatedBytes() / candidate.avgAllocatedBytes());
+    }
+}
@@ -0,0 +1,129 @@
+package training.afpa.cda24060.squartrbnb.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.HandlerMapping;
+import training.afpa.cda24060.squartrbnb.service.PhotoHotCache;
+import training.afpa.cda24060.squartrbnb.service.PhotoLayout;
+import training.afpa.cda24060.squartrbnb.service.PhotoMetrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhotoFileHandlerTest {
+
+    private static final String NAME = "a".repeat(64) + ".png";
+
+    @TempDir Path root;
+
+    private PhotoHotCache photoHotCache;
+    private PhotoFileHandler handler;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PhotoLayout photoLayout = new PhotoLayout(root.toString());
+        photoHotCache = new PhotoHotCache(registry, new PhotoMetrics(registry), DataSize.ofMegabytes(1),
+                DataSize.ofKilobytes(512), Duration.ofMinutes(1), Duration.ofMinutes(1));
+        handler = new PhotoFileHandler(photoHotCache, photoLayout, List.of(128), DataSize.ofBytes(100));
+
+        byte[] content = new byte[200];
+        for (int i = 0; i < content.length; i++) content[i] = (byte) i;
+        file = photoLayout.originalPath(NAME);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    private static MockHttpServletRequest request(String method, boolean sendfile, String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/uploads/users/" + NAME);
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, NAME);
+        if (sendfile) request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        if (range != null) request.addHeader("Range", range);
+        return request;
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handler.handleRequest(request, response);
+        return response;
+    }
+
+    private MockHttpServletResponse get(String method, boolean sendfile, String range) throws IOException {
+        return serve(request(method, sendfile, range));
+    }
+
+    @Test
+    void get_aboveThreshold_usesSendfileEvenWhenHot() throws IOException {
+        get("GET", false, null);
+        get("GET", false, null);
+        assertTrue(photoHotCache.get(file).isPresent());
+
+        MockHttpServletRequest request = request("GET", true, null);
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(file.toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(200, response.getContentLengthLong());
+    }
+
+    @Test
+    void get_withoutSendfile_servesFromMemoryOnSecondRead() throws IOException {
+        assertEquals(200, get("GET", false, null).getContentAsByteArray().length);
+        assertTrue(photoHotCache.get(file).isEmpty());
+
+        assertArrayEquals(Files.readAllBytes(file), get("GET", false, null).getContentAsByteArray());
+        assertTrue(photoHotCache.get(file).isPresent());
+    }
+
+    @Test
+    void head_neverLoadsIntoMemory() throws IOException {
+        get("HEAD", false, null);
+        get("HEAD", false, null);
+
+        assertTrue(photoHotCache.get(file).isEmpty());
+    }
+
+    @Test
+    void get_singleRange_returnsPartialContent() throws IOException {
+        MockHttpServletResponse response = get("GET", false, "bytes=10-19");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-19/200", response.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(Files.readAllBytes(file), 10, 20), response.getContentAsByteArray());
+
+        assertEquals("bytes 150-199/200", get("GET", false, "bytes=-50").getHeader("Content-Range"));
+    }
+
+    @Test
+    void get_rangeBeyondFile_returns416() throws IOException {
+        MockHttpServletResponse response = get("GET", false, "bytes=500-");
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */200", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void get_rangeOverflowingLong_isNotAServerError() throws IOException {
+        assertEquals(416, get("GET", false, "bytes=99999999999999999999-").getStatus());
+
+        MockHttpServletResponse suffix = get("GET", false, "bytes=-99999999999999999999");
+        assertEquals(206, suffix.getStatus());
+        assertEquals("bytes 0-199/200", suffix.getHeader("Content-Range"));
+
+        MockHttpServletResponse open = get("GET", false, "bytes=0-99999999999999999999");
+        assertEquals(206, open.getStatus());
+        assertEquals("bytes 0-199/200", open.getHeader("Content-Range"));
+    }
+}
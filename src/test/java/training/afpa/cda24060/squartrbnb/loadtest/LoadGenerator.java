@@ -0,0 +1,180 @@
+package training.afpa.cda24060.squartrbnb.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Générateur de charge HTTP en boucle ouverte (java.net.http, sans dépendance).
+ *
+ * Les requêtes partent à cadence fixe ({@code rate} par seconde), quel que soit le temps de
+ * réponse du serveur ; la latence est mesurée depuis l'instant où la requête <em>aurait dû</em>
+ * partir. Un serveur qui ralentit voit donc ses percentiles monter au lieu d'être masqués par
+ * un client qui attend (omission coordonnée).
+ *
+ * Au plus {@code maxInFlight} requêtes sont en vol : au-delà, la requête n'est pas envoyée et
+ * compte comme "abandonnée" (le client ne suit plus, le serveur est saturé).
+ */
+class LoadGenerator {
+
+    /** Type de requête du mélange, tiré au sort selon son poids */
+    record Operation(String name, int weight, Supplier<HttpRequest> request) {
+    }
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final List<Operation> operations;
+    private final int totalWeight;
+    private final int rate;
+    private final int maxInFlight;
+
+    LoadGenerator(List<Operation> operations, int rate, int maxInFlight) {
+        this.operations = operations.stream().filter(o -> o.weight() > 0).toList();
+        this.totalWeight = this.operations.stream().mapToInt(Operation::weight).sum();
+        this.rate = rate;
+        this.maxInFlight = maxInFlight;
+        if (totalWeight == 0) throw new IllegalArgumentException("Mélange de requêtes vide");
+    }
+
+    /**
+     * Envoie la charge pendant {@code warmup + duration} ; seules les requêtes parties après
+     * le préchauffage sont mesurées.
+     */
+    Report run(Duration warmup, Duration duration) throws InterruptedException {
+        Map<String, Samples> samples = new LinkedHashMap<>();
+        operations.forEach(o -> samples.put(o.name(), new Samples()));
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicLong dropped = new AtomicLong();
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long warmupNanos = warmup.toNanos();
+        long totalNanos = warmupNanos + duration.toNanos();
+        long start = System.nanoTime();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended - start >= totalNanos) break;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            Operation operation = pick();
+            boolean measured = intended - start >= warmupNanos;
+            if (!inFlight.tryAcquire()) {
+                if (measured) dropped.incrementAndGet();
+                continue;
+            }
+            Samples target = samples.get(operation.name());
+            try {
+                client.sendAsync(operation.request().get(), HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> {
+                            inFlight.release();
+                            if (measured) {
+                                target.add(System.nanoTime() - intended, error != null || response.statusCode() >= 400);
+                            }
+                        });
+            } catch (RuntimeException e) {
+                // Requête non construite ou refusée avant l'envoi : le permis ne serait jamais rendu
+                inFlight.release();
+                if (measured) target.add(System.nanoTime() - intended, true);
+            }
+        }
+
+        // Fin des requêtes en vol (30 s au plus)
+        if (inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS)) inFlight.release(maxInFlight);
+        return new Report(samples, dropped.get(), duration);
+    }
+
+    private Operation pick() {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Operation operation : operations) {
+            r -= operation.weight();
+            if (r < 0) return operation;
+        }
+        return operations.getLast();
+    }
+
+    /** Latences (ns) et erreurs d'un type de requête */
+    static final class Samples {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        synchronized void add(long latency, boolean error) {
+            if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = latency;
+            if (error) errors++;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(latencies, count);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+    }
+
+    record Report(Map<String, Samples> samples, long dropped, Duration duration) {
+
+        private static final double[] PERCENTILES = {0.50, 0.95, 0.99, 0.999};
+
+        long totalErrors() {
+            return samples.values().stream().mapToLong(Samples::errors).sum();
+        }
+
+        /** Tableau : débit, p50/p95/p99/p99.9, max (ms) et erreurs, par type puis au total */
+        String format() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%-16s %8s %9s %9s %9s %9s %9s %9s %7s%n",
+                    "requête", "nb", "req/s", "p50", "p95", "p99", "p99.9", "max", "erreurs"));
+
+            List<long[]> all = new ArrayList<>();
+            for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+                long[] sorted = entry.getValue().sorted();
+                all.add(sorted);
+                line(out, entry.getKey(), sorted, entry.getValue().errors());
+            }
+            long[] merged = all.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            line(out, "TOTAL", merged, totalErrors());
+            out.append(String.format("Abandonnées (plus de requêtes en vol que permis) : %d%n", dropped));
+            return out.toString();
+        }
+
+        private void line(StringBuilder out, String name, long[] sorted, long errors) {
+            double seconds = duration.toNanos() / 1e9;
+            out.append(String.format("%-16s %8d %9.1f", name, sorted.length, sorted.length / seconds));
+            for (double p : PERCENTILES) {
+                out.append(String.format(" %9.2f", millis(percentile(sorted, p))));
+            }
+            out.append(String.format(" %9.2f %7d%n", millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]), errors));
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.clamp(index, 0, sorted.length - 1)];
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package training.afpa.cda24060.squartrbnb.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ActiveProfilesResolver;
+import training.afpa.cda24060.squartrbnb.service.PhotoStorageService;
+import training.afpa.cda24060.squartrbnb.service.RoleCatalog;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test de charge de bout en bout : l'application démarre sur une base H2 embarquée (profil
+ * Spring "loadtest", ni MySQL ni collecteur OTLP), avec loadtest.users utilisateurs et
+ * loadtest.photos photos, puis {@link LoadGenerator} envoie un mélange de requêtes
+ * UserController / PhotoController / photos statiques à loadtest.rate requêtes par seconde.
+ *
+ * Rapport (débit, p50/p95/p99/p99.9, erreurs) sur la sortie standard et dans
+ * target/loadtest/report.txt.
+ *
+ * Lancement : mvn test -Ploadtest [-Dloadtest.rate=500 -Dloadtest.duration=PT60S]
+ * Threads virtuels (profil "virtual") : ajouter -Dloadtest.virtual=true
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(resolver = UserPhotoLoadTest.Profiles.class)
+class UserPhotoLoadTest {
+
+    private static final String PASSWORD = "Charge!2026";
+
+    /** "loadtest", plus "virtual" si -Dloadtest.virtual=true */
+    static class Profiles implements ActiveProfilesResolver {
+        @Override
+        public String[] resolve(Class<?> testClass) {
+            return Boolean.getBoolean("loadtest.virtual")
+                    ? new String[]{"loadtest", "virtual"}
+                    : new String[]{"loadtest"};
+        }
+    }
+
+    @Value("${local.server.port}") private int port;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private PhotoStorageService photoStorageService;
+    @Autowired private RoleCatalog roleCatalog;
+
+    @Value("${loadtest.users}") private int userCount;
+    @Value("${loadtest.photos}") private int photoCount;
+    @Value("${loadtest.rate}") private int rate;
+    @Value("${loadtest.max-in-flight}") private int maxInFlight;
+    @Value("${loadtest.warmup}") private Duration warmup;
+    @Value("${loadtest.duration}") private Duration duration;
+    @Value("${loadtest.max-error-ratio}") private double maxErrorRatio;
+    @Value("${loadtest.mix.get-by-id}") private int getByIdWeight;
+    @Value("${loadtest.mix.get-by-email}") private int getByEmailWeight;
+    @Value("${loadtest.mix.page}") private int pageWeight;
+    @Value("${loadtest.mix.batch}") private int batchWeight;
+    @Value("${loadtest.mix.photo}") private int photoWeight;
+    @Value("${loadtest.mix.variant}") private int variantWeight;
+    @Value("${loadtest.mix.upload}") private int uploadWeight;
+    @Value("${loadtest.mix.create}") private int createWeight;
+    @Value("${loadtest.mix.patch}") private int patchWeight;
+
+    private List<Integer> userIds;
+    private List<String> photoPaths;
+    private List<byte[]> uploadImages;
+    private final AtomicInteger created = new AtomicInteger();
+
+    @Test
+    void mixedLoad() throws Exception {
+        seed();
+
+        LoadGenerator generator = new LoadGenerator(List.of(
+                new LoadGenerator.Operation("get-by-id", getByIdWeight,
+                        () -> get("/api/users/" + randomUserId())),
+                new LoadGenerator.Operation("get-by-email", getByEmailWeight,
+                        () -> get("/api/users/email/load" + randomIndex(userCount) + "@loadtest.local")),
+                new LoadGenerator.Operation("page", pageWeight,
+                        () -> get("/api/users?limit=50")),
+                new LoadGenerator.Operation("batch", batchWeight,
+                        () -> get("/api/users/batch?ids=" + randomUserIds(20))),
+                new LoadGenerator.Operation("photo", photoWeight,
+                        () -> get("/" + randomPhoto())),
+                new LoadGenerator.Operation("variant", variantWeight,
+                        () -> get("/" + randomPhoto().replace("uploads/users/", "uploads/users/variants/128/"))),
+                new LoadGenerator.Operation("upload", uploadWeight,
+                        () -> request("/api/users/photo/stream").header("Content-Type", "image/png")
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(
+                                        uploadImages.get(randomIndex(uploadImages.size())))).build()),
+                new LoadGenerator.Operation("create", createWeight, this::createUser),
+                new LoadGenerator.Operation("patch", patchWeight,
+                        () -> request("/api/users/" + randomUserId()).header("Content-Type", "application/json")
+                                .method("PATCH", HttpRequest.BodyPublishers.ofString(
+                                        "{\"nom\":\"Modifie" + randomIndex(1_000) + "\"}")).build())
+        ), rate, maxInFlight);
+
+        System.out.printf("%nCharge : %d req/s pendant %s (préchauffage %s), %d utilisateurs, %d photos, threads %s%n",
+                rate, duration, warmup, userCount, photoCount, Boolean.getBoolean("loadtest.virtual") ? "virtuels" : "plateforme");
+        LoadGenerator.Report report = generator.run(warmup, duration);
+        String text = report.format();
+        System.out.println(text);
+
+        Path output = Path.of("target", "loadtest", "report.txt");
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, text);
+
+        long total = report.samples().values().stream().mapToLong(s -> s.sorted().length).sum();
+        assertTrue(total > 0, "Aucune requête mesurée");
+        assertTrue(report.totalErrors() <= total * maxErrorRatio,
+                "Trop d'erreurs : " + report.totalErrors() + " sur " + total);
+    }
+
+    // ── Données ──────────────────────────────────────────────────────────────
+
+    private void seed() throws IOException {
+        jdbcTemplate.update("delete from users");
+        jdbcTemplate.update("delete from role");
+        jdbcTemplate.update("insert into role (name) values (?)", RoleCatalog.DEFAULT_ROLE);
+        roleCatalog.refresh();
+        Integer roleId = jdbcTemplate.queryForObject("select id from role where name = ?", Integer.class,
+                RoleCatalog.DEFAULT_ROLE);
+
+        // Photos d'abord : stockées par l'application (hash, déduplication, variantes)
+        Random random = new Random(42);
+        photoPaths = new ArrayList<>(photoCount);
+        for (int i = 0; i < photoCount; i++) {
+            photoPaths.add(photoStorageService.store(new ByteArrayResource(png(random)), "seed.png").publicPath());
+        }
+        uploadImages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            uploadImages.add(png(random));
+        }
+
+        String hash = passwordEncoder.encode(PASSWORD);
+        List<Object[]> batch = new ArrayList<>(5_000);
+        for (int i = 0; i < userCount; i++) {
+            batch.add(new Object[]{
+                    "load" + i, "Nom" + i, "Prenom" + i, "load" + i + "@loadtest.local",
+                    Date.valueOf(LocalDate.of(1980, 1, 1).plusDays(i % 10_000)),
+                    photoPaths.isEmpty() ? null : photoPaths.get(i % photoPaths.size()),
+                    hash, roleId
+            });
+            if (batch.size() == 5_000) {
+                insert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) insert(batch);
+        userIds = jdbcTemplate.queryForList("select id from users order by id", Integer.class);
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("insert into users (username, nom, prenom, email, date_naissance, "
+                + "photo_path, password_hash, role_id) values (?, ?, ?, ?, ?, ?, ?, ?)", batch);
+    }
+
+    /** Image PNG 256×256 unique (quelques Ko), pour des hash tous différents */
+    private static byte[] png(Random random) throws IOException {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            for (int i = 0; i < 12; i++) {
+                g.setColor(new Color(random.nextInt(0xFFFFFF)));
+                g.fillRect(random.nextInt(256), random.nextInt(256), 1 + random.nextInt(128), 1 + random.nextInt(128));
+            }
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    // ── Requêtes ─────────────────────────────────────────────────────────────
+
+    private HttpRequest createUser() {
+        int n = created.incrementAndGet();
+        String json = """
+                {"username":"new%1$d","nom":"Nouveau","prenom":"Utilisateur%1$d","email":"new%1$d@loadtest.local",\
+                "dateNaissance":"1990-05-17","password":"%2$s"}""".formatted(n, PASSWORD);
+        return request("/api/users").header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30));
+    }
+
+    private int randomUserId() {
+        return userIds.get(randomIndex(userIds.size()));
+    }
+
+    private String randomUserIds(int count) {
+        return ThreadLocalRandom.current().ints(count, 0, userIds.size())
+                .mapToObj(i -> String.valueOf(userIds.get(i)))
+                .collect(Collectors.joining(","));
+    }
+
+    private String randomPhoto() {
+        return photoPaths.get(randomIndex(photoPaths.size()));
+    }
+
+    private static int randomIndex(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+}
@@ -0,0 +1,74 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExifOrientationTest {
+
+    private static final int RED = 0xFFFF0000;
+    private static final int BLUE = 0xFF0000FF;
+
+    /** Début de JPEG : SOI puis un segment APP1 EXIF dont l'IFD0 ne contient que l'orientation */
+    private static byte[] jpegHeader(int orientation, boolean littleEndian) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1, 0, 34});
+        out.writeBytes("Exif\0\0".getBytes());
+        if (littleEndian) {
+            out.writeBytes(new byte[]{'I', 'I', 42, 0, 8, 0, 0, 0, 1, 0,
+                    0x12, 0x01, 3, 0, 1, 0, 0, 0, (byte) orientation, 0, 0, 0});
+        } else {
+            out.writeBytes(new byte[]{'M', 'M', 0, 42, 0, 0, 0, 8, 0, 1,
+                    0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0});
+        }
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xDA});
+        return out.toByteArray();
+    }
+
+    @Test
+    void parse_readsOrientationInBothByteOrders() {
+        assertEquals(6, ExifOrientation.parse(jpegHeader(6, false)));
+        assertEquals(8, ExifOrientation.parse(jpegHeader(8, true)));
+    }
+
+    @Test
+    void parse_defaultsToNormalWithoutExif() {
+        assertEquals(ExifOrientation.NORMAL, ExifOrientation.parse(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xDA}));
+        assertEquals(ExifOrientation.NORMAL, ExifOrientation.parse(new byte[]{(byte) 0x89, 'P', 'N', 'G'}));
+        assertEquals(ExifOrientation.NORMAL, ExifOrientation.parse(jpegHeader(9, false)));
+    }
+
+    @Test
+    void apply_rotatesQuarterTurnClockwiseForOrientation6() {
+        // Rouge à gauche, bleu à droite : après un quart de tour horaire, rouge en haut
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, RED);
+        image.setRGB(1, 0, BLUE);
+
+        BufferedImage rotated = ExifOrientation.apply(image, 6);
+
+        assertEquals(1, rotated.getWidth());
+        assertEquals(2, rotated.getHeight());
+        assertEquals(RED, rotated.getRGB(0, 0));
+        assertEquals(BLUE, rotated.getRGB(0, 1));
+    }
+
+    @Test
+    void apply_mirrorsAndRotatesAntiClockwise() {
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, RED);
+        image.setRGB(1, 0, BLUE);
+
+        BufferedImage mirrored = ExifOrientation.apply(image, 2);
+        assertEquals(BLUE, mirrored.getRGB(0, 0));
+        assertEquals(RED, mirrored.getRGB(1, 0));
+
+        BufferedImage rotated = ExifOrientation.apply(image, 8);
+        assertEquals(BLUE, rotated.getRGB(0, 0));
+        assertEquals(RED, rotated.getRGB(0, 1));
+        assertSame(image, ExifOrientation.apply(image, ExifOrientation.NORMAL));
+    }
+}
@@ -0,0 +1,61 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhotoHotCacheTest {
+
+    @TempDir Path root;
+
+    private PhotoHotCache cache(Duration admissionWindow) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new PhotoHotCache(registry, new PhotoMetrics(registry), DataSize.ofMegabytes(1),
+                DataSize.ofKilobytes(4), Duration.ofMinutes(1), admissionWindow);
+    }
+
+    private Path file(String name, int size) throws IOException {
+        return Files.write(root.resolve(name), new byte[size]);
+    }
+
+    @Test
+    void admit_loadsOnlyOnSecondReadWithinWindow() throws IOException {
+        PhotoHotCache cache = cache(Duration.ofMinutes(1));
+        Path file = file("a.png", 100);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+        assertTrue(cache.admit(file, 100, lastModified).isEmpty());
+        assertTrue(cache.get(file).isEmpty());
+
+        assertEquals(100, cache.admit(file, 100, lastModified).orElseThrow().size());
+        assertTrue(cache.get(file).isPresent());
+    }
+
+    @Test
+    void admit_forgetsFirstReadAfterWindow() throws IOException {
+        PhotoHotCache cache = cache(Duration.ZERO);
+        Path file = file("a.png", 100);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+        assertTrue(cache.admit(file, 100, lastModified).isEmpty());
+        assertTrue(cache.admit(file, 100, lastModified).isEmpty());
+    }
+
+    @Test
+    void admit_ignoresFilesAboveMaxSize() throws IOException {
+        PhotoHotCache cache = cache(Duration.ofMinutes(1));
+        Path file = file("big.png", 5 * 1024);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+        cache.admit(file, 5 * 1024, lastModified);
+        assertTrue(cache.admit(file, 5 * 1024, lastModified).isEmpty());
+    }
+}
@@ -0,0 +1,183 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import training.afpa.cda24060.squartrbnb.repository.PhotoBlobRepository;
+import training.afpa.cda24060.squartrbnb.repository.UserRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoReconciliationServiceTest {
+
+    private static final String HASH = "ab".repeat(32);
+    private static final String HASHED = HASH + ".jpg";
+
+    @Mock private UserRepository userRepository;
+    @Mock private PhotoBlobRepository photoBlobRepository;
+    @Mock private PhotoStorageService photoStorageService;
+    @Mock private PhotoHotCache photoHotCache;
+
+    @TempDir Path root;
+
+    private PhotoLayout photoLayout;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        photoLayout = new PhotoLayout(root.toString());
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(photoStorageService.publicPath(anyString()))
+                .thenAnswer(invocation -> "uploads/users/" + invocation.getArgument(0));
+        lenient().when(userRepository.countByPhotoPathIn(anyCollection())).thenReturn(List.of());
+    }
+
+    private PhotoReconciliationService service(PhotoReconciliationService.Mode mode) {
+        return new PhotoReconciliationService(userRepository, photoBlobRepository, photoStorageService,
+                photoHotCache, photoLayout, new PhotoContentLocks(), meterRegistry, mode,
+                Duration.ofHours(24), Duration.ofDays(7), 500, Duration.ZERO, List.of(48));
+    }
+
+    private Path file(Path path, Duration age) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, new byte[]{1, 2, 3});
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(age)));
+        return path;
+    }
+
+    private Path quarantined(String filename) {
+        return root.resolve(PhotoReconciliationService.QUARANTINE_DIR).resolve(filename);
+    }
+
+    @Test
+    void reconcile_ignoresFilesWithinGracePeriod() throws IOException {
+        Path recent = file(photoLayout.originalPath(HASHED), Duration.ofHours(1));
+
+        service(PhotoReconciliationService.Mode.DELETE).reconcile();
+
+        assertTrue(Files.exists(recent));
+        verify(userRepository, never()).countByPhotoFilename(anyString());
+    }
+
+    @Test
+    void reconcile_quarantinesOrphanWithItsVariantsAndBlob() throws IOException {
+        Path original = file(photoLayout.originalPath(HASHED), Duration.ofDays(2));
+        Path variant = file(photoLayout.variantPath(48, HASHED), Duration.ofDays(2));
+
+        service(PhotoReconciliationService.Mode.QUARANTINE).reconcile();
+
+        verify(photoBlobRepository).deleteByHash(HASH);
+        assertFalse(Files.exists(original));
+        assertFalse(Files.exists(variant));
+        assertTrue(Files.exists(quarantined(HASHED)));
+        assertEquals(1.0, meterRegistry.get("photos.gc.files").tag("action", "quarantined").counter().count());
+    }
+
+    @Test
+    void reconcile_deletesOrphanInDeleteMode() throws IOException {
+        Path legacy = file(photoLayout.originalPath("photo.png"), Duration.ofDays(2));
+
+        service(PhotoReconciliationService.Mode.DELETE).reconcile();
+
+        assertFalse(Files.exists(legacy));
+        assertFalse(Files.exists(quarantined("photo.png")));
+        verify(photoBlobRepository, never()).deleteByHash(anyString());
+    }
+
+    @Test
+    void reconcile_keepsFileReferencedUnderAnotherPathForm() throws IOException {
+        // photoPath enregistré en URL absolue : pas de correspondance exacte, mais le nom correspond
+        Path original = file(photoLayout.originalPath(HASHED), Duration.ofDays(2));
+        when(userRepository.countByPhotoFilename(HASHED)).thenReturn(2L);
+
+        service(PhotoReconciliationService.Mode.DELETE).reconcile();
+
+        assertTrue(Files.exists(original));
+        verify(photoBlobRepository).updateRefCount(HASH, 2);
+        verify(photoBlobRepository, never()).deleteByHash(anyString());
+    }
+
+    @Test
+    void reconcile_recalibratesRefCountOfReferencedFile() throws IOException {
+        file(photoLayout.originalPath(HASHED), Duration.ofDays(2));
+        UserRepository.PhotoPathCount row = mock(UserRepository.PhotoPathCount.class);
+        when(row.getPhotoPath()).thenReturn("uploads/users/" + HASHED);
+        when(row.getUsers()).thenReturn(3L);
+        when(userRepository.countByPhotoPathIn(anyCollection())).thenReturn(List.of(row));
+
+        service(PhotoReconciliationService.Mode.DELETE).reconcile();
+
+        verify(photoBlobRepository).updateRefCount(HASH, 3);
+        verify(userRepository, never()).countByPhotoFilename(anyString());
+    }
+
+    @Test
+    void reconcile_leavesFileTouchedDuringRecheck() throws IOException {
+        Path original = file(photoLayout.originalPath(HASHED), Duration.ofDays(2));
+        // Même contenu réuploadé pendant le passage : date de modification remise à jour
+        when(userRepository.countByPhotoFilename(HASHED)).thenAnswer(invocation -> {
+            Files.setLastModifiedTime(original, FileTime.from(Instant.now()));
+            return 0L;
+        });
+
+        service(PhotoReconciliationService.Mode.DELETE).reconcile();
+
+        assertTrue(Files.exists(original));
+        verify(photoBlobRepository, never()).deleteByHash(anyString());
+    }
+
+    @Test
+    void reconcile_removesStalePartFilesOnly() throws IOException {
+        Path stale = file(root.resolve(".upload-1.part"), Duration.ofDays(2));
+        Path current = file(root.resolve(".upload-2.part"), Duration.ofMinutes(1));
+
+        service(PhotoReconciliationService.Mode.DELETE).reconcile();
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(current));
+    }
+
+    @Test
+    void reconcile_purgesExpiredQuarantineAndKeepsRecentOnes() throws IOException {
+        Path expired = file(quarantined("old.jpg"), Duration.ofDays(8));
+        Path recent = file(quarantined("new.jpg"), Duration.ofDays(1));
+
+        service(PhotoReconciliationService.Mode.QUARANTINE).reconcile();
+
+        assertFalse(Files.exists(expired));
+        assertTrue(Files.exists(recent));
+    }
+
+    @Test
+    void reconcile_restoresQuarantinedFileReferencedAgain() throws IOException {
+        Path legacy = file(quarantined("photo.png"), Duration.ofDays(8));
+        Path hashed = file(quarantined(HASHED), Duration.ofDays(8));
+        when(userRepository.countByPhotoFilename(anyString())).thenReturn(1L);
+
+        service(PhotoReconciliationService.Mode.QUARANTINE).reconcile();
+
+        assertFalse(Files.exists(legacy));
+        assertTrue(Files.exists(photoLayout.originalPath("photo.png")));
+        verify(photoStorageService).publish(hashed, HASH, 3, ".jpg");
+        verify(photoBlobRepository).updateRefCount(HASH, 1);
+        assertEquals(2.0, meterRegistry.get("photos.gc.files").tag("action", "restored").counter().count());
+        verify(photoHotCache, never()).invalidate(any());
+    }
+}
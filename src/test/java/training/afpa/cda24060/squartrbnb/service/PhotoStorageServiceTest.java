@@ -0,0 +1,142 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import training.afpa.cda24060.squartrbnb.entity.PhotoBlob;
+import training.afpa.cda24060.squartrbnb.repository.PhotoBlobRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoStorageServiceTest {
+
+    /** En-tête PNG suivi de quelques octets : suffisant pour la détection du format */
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 1, 2, 3};
+
+    @Mock private PhotoBlobRepository photoBlobRepository;
+    @Mock private PhotoVariantService photoVariantService;
+
+    @TempDir Path root;
+
+    private PhotoLayout photoLayout;
+    private PhotoStorageService storage;
+    private String hash;
+
+    @BeforeEach
+    void setUp() {
+        photoLayout = new PhotoLayout(root.toString());
+        storage = new PhotoStorageService(photoBlobRepository, photoVariantService, photoLayout,
+                new PhotoMetrics(new SimpleMeterRegistry()), new PhotoContentLocks(), "static/uploads/users");
+        hash = HexFormat.of().formatHex(PhotoStorageService.sha256().digest(PNG));
+    }
+
+    private static PhotoBlob blob(String hash) {
+        return PhotoBlob.builder().hash(hash).filename(hash + ".png").size(PNG.length).build();
+    }
+
+    private long filesUnder(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void store_writesNewContentUnderItsHash() throws IOException {
+        when(photoBlobRepository.findById(hash)).thenReturn(Optional.empty());
+
+        PhotoStorageService.StoredPhoto stored = storage.store(new ByteArrayResource(PNG), "Photo.PNG");
+
+        assertFalse(stored.deduplicated());
+        assertEquals("uploads/users/" + hash + ".png", stored.publicPath());
+        assertArrayEquals(PNG, Files.readAllBytes(photoLayout.originalPath(hash + ".png")));
+        verify(photoBlobRepository).insert(eq(hash), eq(hash + ".png"), eq((long) PNG.length), any());
+        verify(photoVariantService).enqueue(hash + ".png");
+    }
+
+    @Test
+    void store_reusesKnownContentWithoutWriting() throws IOException {
+        Path existing = photoLayout.originalPath(hash + ".png");
+        Files.createDirectories(existing.getParent());
+        Files.write(existing, PNG);
+        Files.setLastModifiedTime(existing, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        when(photoBlobRepository.findById(hash)).thenReturn(Optional.of(blob(hash)));
+
+        PhotoStorageService.StoredPhoto stored = storage.store(new ByteArrayResource(PNG), "other.png");
+
+        assertTrue(stored.deduplicated());
+        assertEquals(1, filesUnder(root));
+        // Date remise à jour pour le délai de grâce du rapprochement, compteur inchangé
+        assertTrue(Files.getLastModifiedTime(existing).toInstant().isAfter(Instant.now().minus(Duration.ofHours(1))));
+        verify(photoBlobRepository).findById(hash);
+        verifyNoMoreInteractions(photoBlobRepository);
+        verifyNoInteractions(photoVariantService);
+    }
+
+    @Test
+    void storeStream_rewritesContentWhoseFileWasDiscarded() throws IOException {
+        // Ligne encore présente mais fichier écarté (quarantaine) : le contenu est réécrit
+        when(photoBlobRepository.findById(hash)).thenReturn(Optional.of(blob(hash)));
+
+        PhotoStorageService.StoredPhoto stored = storage.storeStream(new ByteArrayInputStream(PNG), 1024);
+
+        assertFalse(stored.deduplicated());
+        assertArrayEquals(PNG, Files.readAllBytes(photoLayout.originalPath(hash + ".png")));
+        verify(photoBlobRepository).insert(eq(hash), eq(hash + ".png"), eq((long) PNG.length), any());
+        verify(photoVariantService).enqueue(hash + ".png");
+    }
+
+    @Test
+    void storeStream_reusesContentPublishedConcurrently() throws IOException {
+        when(photoBlobRepository.findById(hash)).thenReturn(Optional.empty());
+        when(photoBlobRepository.insert(eq(hash), anyString(), anyLong(), any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        PhotoStorageService.StoredPhoto stored = storage.storeStream(new ByteArrayInputStream(PNG), 1024);
+
+        assertTrue(stored.deduplicated());
+        assertTrue(Files.exists(photoLayout.originalPath(hash + ".png")));
+        verifyNoInteractions(photoVariantService);
+    }
+
+    @Test
+    void storeStream_rejectsNonImageBeforeWriting() throws IOException {
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.storeStream(new ByteArrayInputStream("not an image".getBytes()), 1024));
+
+        assertEquals(0, filesUnder(root));
+        verifyNoInteractions(photoBlobRepository);
+    }
+
+    @Test
+    void storeStream_rejectsOversizedUploadAndRemovesPartFile() throws IOException {
+        assertThrows(MaxUploadSizeExceededException.class,
+                () -> storage.storeStream(new ByteArrayInputStream(PNG), PNG.length - 1));
+
+        assertEquals(0, filesUnder(root));
+        verifyNoInteractions(photoBlobRepository);
+    }
+}
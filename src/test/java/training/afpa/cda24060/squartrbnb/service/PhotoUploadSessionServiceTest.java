@@ -0,0 +1,198 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import training.afpa.cda24060.squartrbnb.dto.PhotoUploadStatusDTO;
+import training.afpa.cda24060.squartrbnb.exception.DataConflictException;
+import training.afpa.cda24060.squartrbnb.exception.ResourceNotFoundException;
+import training.afpa.cda24060.squartrbnb.exception.ServiceUnavailableException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoUploadSessionServiceTest {
+
+    private static final int CHUNK = 8;
+
+    @Mock private PhotoStorageService photoStorageService;
+
+    @TempDir Path root;
+
+    /** 20 octets commençant par une signature PNG : 3 morceaux (8, 8, 4) */
+    private final byte[] png = new byte[20];
+
+    @BeforeEach
+    void setUp() throws IOException {
+        byte[] signature = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13};
+        System.arraycopy(signature, 0, png, 0, signature.length);
+        for (int i = signature.length; i < png.length; i++) png[i] = (byte) i;
+        lenient().when(photoStorageService.createUploadDir()).thenReturn(root);
+    }
+
+    private PhotoUploadSessionService service(Duration ttl) {
+        return new PhotoUploadSessionService(photoStorageService, new PhotoMetrics(new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(), DataSize.ofKilobytes(1), DataSize.ofBytes(CHUNK), 10, ttl);
+    }
+
+    private PhotoUploadStatusDTO send(PhotoUploadSessionService service, String id, int index) throws IOException {
+        int from = index * CHUNK;
+        byte[] chunk = Arrays.copyOfRange(png, from, Math.min(png.length, from + CHUNK));
+        return service.writeChunk(id, index, new ByteArrayInputStream(chunk));
+    }
+
+    @Test
+    void commit_assemblesChunksReceivedOutOfOrder() throws IOException {
+        PhotoUploadSessionService service = service(Duration.ofHours(1));
+        String id = service.open(png.length).getUploadId();
+        AtomicReference<byte[]> published = new AtomicReference<>();
+        when(photoStorageService.publish(any(), anyString(), anyLong(), anyString())).thenAnswer(invocation -> {
+            published.set(Files.readAllBytes(invocation.getArgument(0)));
+            return new PhotoStorageService.StoredPhoto("uploads/users/x.png", invocation.getArgument(1), png.length, false);
+        });
+
+        send(service, id, 2);
+        PhotoUploadStatusDTO status = send(service, id, 0);
+        assertEquals(List.of(1), status.getMissingChunks());
+        assertEquals(2, status.getReceived().size());
+        assertTrue(send(service, id, 1).isComplete());
+
+        service.commit(id);
+
+        assertArrayEquals(png, published.get());
+        String hash = HexFormat.of().formatHex(PhotoStorageService.sha256().digest(png));
+        verify(photoStorageService).publish(any(), eq(hash), eq((long) png.length), eq(".png"));
+        assertThrows(ResourceNotFoundException.class, () -> service.status(id));
+    }
+
+    @Test
+    void writeChunk_rewritesAChunkAlreadyReceived() throws IOException {
+        PhotoUploadSessionService service = service(Duration.ofHours(1));
+        String id = service.open(png.length).getUploadId();
+        AtomicReference<byte[]> published = new AtomicReference<>();
+        when(photoStorageService.publish(any(), anyString(), anyLong(), anyString())).thenAnswer(invocation -> {
+            published.set(Files.readAllBytes(invocation.getArgument(0)));
+            return new PhotoStorageService.StoredPhoto("uploads/users/x.png", invocation.getArgument(1), png.length, false);
+        });
+
+        send(service, id, 0);
+        service.writeChunk(id, 1, new ByteArrayInputStream(new byte[CHUNK]));
+        send(service, id, 1);
+        send(service, id, 2);
+        service.commit(id);
+
+        assertArrayEquals(png, published.get());
+    }
+
+    @Test
+    void writeChunk_rejectsWrongLengthWithoutMarkingIt() throws IOException {
+        PhotoUploadSessionService service = service(Duration.ofHours(1));
+        String id = service.open(png.length).getUploadId();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(id, 2, new ByteArrayInputStream(new byte[CHUNK])));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(id, 1, new ByteArrayInputStream(new byte[3])));
+
+        assertEquals(List.of(0, 1, 2), service.status(id).getMissingChunks());
+    }
+
+    @Test
+    void writeChunk_rejectsFirstChunkThatIsNotAnImage() throws IOException {
+        PhotoUploadSessionService service = service(Duration.ofHours(1));
+        String id = service.open(png.length).getUploadId();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(id, 0, new ByteArrayInputStream("notimage".getBytes())));
+
+        assertTrue(service.status(id).getMissingChunks().contains(0));
+    }
+
+    @Test
+    void commit_rejectsIncompleteUploadAndKeepsSession() throws IOException {
+        PhotoUploadSessionService service = service(Duration.ofHours(1));
+        String id = service.open(png.length).getUploadId();
+        send(service, id, 0);
+        send(service, id, 2);
+
+        DataConflictException e = assertThrows(DataConflictException.class, () -> service.commit(id));
+
+        assertTrue(e.getMessage().contains("1 morceau"));
+        assertEquals(List.of(1), service.status(id).getMissingChunks());
+        verify(photoStorageService, never()).publish(any(), anyString(), anyLong(), anyString());
+    }
+
+    @Test
+    void expireSessions_removesIdleSessionAndItsFile() throws IOException {
+        PhotoUploadSessionService service = service(Duration.ZERO);
+        String id = service.open(png.length).getUploadId();
+        send(service, id, 0);
+        Path part = root.resolve(".chunked-" + id + ".part");
+        assertTrue(Files.exists(part));
+
+        service.expireSessions();
+
+        assertFalse(Files.exists(part));
+        assertThrows(ResourceNotFoundException.class, () -> service.status(id));
+    }
+
+    @Test
+    void open_concurrentOpensNeverExceedMaxSessions() throws Exception {
+        PhotoUploadSessionService service = service(Duration.ofHours(1));
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Callable<String>> opens = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            opens.add(() -> {
+                ready.await();
+                try {
+                    return service.open(png.length).getUploadId();
+                } catch (ServiceUnavailableException e) {
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> results = opens.stream().map(executor::submit).toList();
+            ready.countDown();
+            List<String> opened = new ArrayList<>();
+            for (Future<String> result : results) {
+                if (result.get() != null) opened.add(result.get());
+            }
+
+            assertEquals(10, opened.size());
+            assertThrows(ServiceUnavailableException.class, () -> service.open(png.length));
+            service.abort(opened.get(0));
+            assertNotNull(service.open(png.length).getUploadId());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import training.afpa.cda24060.squartrbnb.entity.PhotoVariantJob;
+import training.afpa.cda24060.squartrbnb.entity.PhotoVariantJob.Status;
+import training.afpa.cda24060.squartrbnb.repository.PhotoVariantJobRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoVariantServiceTest {
+
+    @Mock private PhotoVariantJobRepository jobRepository;
+    @Mock private PhotoHotCache photoHotCache;
+    @Mock private PhotoLayout photoLayout;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PhotoVariantService variantService;
+
+    @BeforeEach
+    void setUp() {
+        variantService = new PhotoVariantService(jobRepository, photoHotCache, photoLayout, meterRegistry,
+                List.of(48, 128), 0.85f, 40_000_000L, 3, 1, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        variantService.shutdown();
+    }
+
+    @Test
+    void enqueue_createsJobForReencodableExtensions() {
+        variantService.enqueue("abc.JPEG");
+
+        ArgumentCaptor<PhotoVariantJob> job = ArgumentCaptor.forClass(PhotoVariantJob.class);
+        verify(jobRepository).save(job.capture());
+        assertEquals(Status.PENDING, job.getValue().getStatus());
+    }
+
+    @Test
+    void enqueue_keepsOnlyTheOriginalForOtherExtensions() {
+        variantService.enqueue("abc.bmp");
+        variantService.enqueue("abc.tif");
+        variantService.enqueue("abc.webp");
+        variantService.enqueue("abc");
+
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void outputFormat_matchesExtension() {
+        assertEquals(Optional.of("jpeg"), PhotoVariantService.outputFormat("a.jpg"));
+        assertEquals(Optional.of("png"), PhotoVariantService.outputFormat("a.PNG"));
+        assertEquals(Optional.of("gif"), PhotoVariantService.outputFormat("a.gif"));
+        assertEquals(Optional.empty(), PhotoVariantService.outputFormat("a.bmp"));
+    }
+
+    @Test
+    void process_outOfMemoryStillFinishesTheJob() {
+        PhotoVariantJob job = PhotoVariantJob.builder().id(7L).filename("abc.png").status(Status.RUNNING)
+                .attempts(1).build();
+        when(jobRepository.countByStatus(Status.PENDING)).thenReturn(1L);
+        when(jobRepository.findIdsByStatus(eq(Status.PENDING), any())).thenReturn(List.of(7L));
+        when(jobRepository.claim(eq(7L), any())).thenReturn(1);
+        when(jobRepository.findById(7L)).thenReturn(Optional.of(job));
+        when(photoLayout.locate("abc.png")).thenThrow(new OutOfMemoryError("Java heap space"));
+
+        variantService.poll();
+
+        verify(jobRepository, timeout(5_000)).finish(eq(7L), eq(Status.PENDING), contains("OutOfMemoryError"), any());
+        assertEquals(1.0, meterRegistry.get("photo.variants.failed").counter().count());
+    }
+}
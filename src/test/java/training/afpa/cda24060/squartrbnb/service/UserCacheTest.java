@@ -0,0 +1,51 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheTest {
+
+    private final UserCache cache = new UserCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+
+    private static UserResponseDTO user(String email) {
+        UserResponseDTO user = new UserResponseDTO();
+        user.setId(1);
+        user.setUsername("johndoe");
+        user.setEmail(email);
+        return user;
+    }
+
+    @Test
+    void put_readBeforeInvalidation_isIgnored() {
+        long readGeneration = cache.generation();
+        cache.invalidate(1);
+
+        cache.put(readGeneration, user("old@example.com"));
+
+        assertTrue(cache.getById(1).isEmpty());
+    }
+
+    @Test
+    void put_freshRead_isServedByIdAndIndexes() {
+        cache.put(cache.generation(), user("John@Example.com"));
+
+        assertTrue(cache.getById(1).isPresent());
+        assertTrue(cache.getByEmail("john@example.com").isPresent());
+        assertTrue(cache.getByUsername("JohnDoe").isPresent());
+    }
+
+    @Test
+    void getByEmail_afterEmailChange_treatsStaleIndexAsMiss() {
+        cache.put(cache.generation(), user("old@example.com"));
+        cache.invalidate(1);
+        cache.put(cache.generation(), user("new@example.com"));
+
+        assertTrue(cache.getByEmail("old@example.com").isEmpty());
+        assertTrue(cache.getByEmail("new@example.com").isPresent());
+    }
+}
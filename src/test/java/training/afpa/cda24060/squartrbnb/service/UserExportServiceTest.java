@@ -0,0 +1,113 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+import training.afpa.cda24060.squartrbnb.controller.UserController;
+import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+import training.afpa.cda24060.squartrbnb.repository.UserRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserExportServiceTest {
+
+    @Mock private UserRepository userRepository;
+
+    private UserExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new UserExportService(userRepository, JsonMapper.builder().build());
+        ReflectionTestUtils.setField(exportService, "chunkSize", 2);
+    }
+
+    private static UserResponseDTO user(int id, String nom) {
+        return new UserResponseDTO(id, "user" + id, nom, "Jean", "user" + id + "@example.com",
+                LocalDate.of(1990, 1, 15), null, 1, "UTILISATEUR");
+    }
+
+    private String export(UserExportService.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void export_readsKeysetChunksAcrossTheBoundary() throws IOException {
+        when(userRepository.findViewsAfter(0, Limit.of(2))).thenReturn(List.of(user(1, "A"), user(4, "B")));
+        when(userRepository.findViewsAfter(4, Limit.of(2))).thenReturn(List.of(user(7, "C")));
+
+        String ndjson = export(UserExportService.Format.NDJSON);
+
+        String[] lines = ndjson.split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[2].contains("\"id\":7"));
+        assertTrue(lines[0].contains("\"dateNaissance\":\"1990-01-15\""));
+        InOrder inOrder = inOrder(userRepository);
+        inOrder.verify(userRepository).findViewsAfter(0, Limit.of(2));
+        inOrder.verify(userRepository).findViewsAfter(4, Limit.of(2));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void export_fullLastChunk_stopsOnEmptyChunk() throws IOException {
+        when(userRepository.findViewsAfter(0, Limit.of(2))).thenReturn(List.of(user(1, "A"), user(2, "B")));
+        when(userRepository.findViewsAfter(2, Limit.of(2))).thenReturn(List.of());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, exportService.export(UserExportService.Format.NDJSON, out));
+    }
+
+    @Test
+    void export_csvQuotesAndNeutralisesCells() throws IOException {
+        when(userRepository.findViewsAfter(0, Limit.of(2)))
+                .thenReturn(List.of(user(1, "Doe, \"Jr\""), user(2, "=HYPERLINK(\"http://x\")")));
+
+        String[] lines = export(UserExportService.Format.CSV).split("\n");
+
+        assertEquals("id,username,nom,prenom,email,dateNaissance,photoPath,roleId,roleName", lines[0]);
+        assertEquals("1,user1,\"Doe, \"\"Jr\"\"\",Jean,user1@example.com,1990-01-15,,1,UTILISATEUR", lines[1]);
+        assertTrue(lines[2].startsWith("2,user2,\"'=HYPERLINK("));
+    }
+
+    @Test
+    void export_emptyTable_writesHeaderOnly() throws IOException {
+        when(userRepository.findViewsAfter(anyInt(), any())).thenReturn(List.of());
+
+        assertEquals("id,username,nom,prenom,email,dateNaissance,photoPath,roleId,roleName\n",
+                export(UserExportService.Format.CSV));
+        assertEquals("", export(UserExportService.Format.NDJSON));
+    }
+
+    @Test
+    void exportEndpoint_setsContentTypeAndAttachment() throws IOException {
+        when(userRepository.findViewsAfter(anyInt(), any())).thenReturn(List.of());
+        UserController controller = new UserController(mock(UserService.class), exportService,
+                mock(UserImportService.class));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.exportUsers("CSV", response);
+
+        assertEquals("text/csv;charset=UTF-8", response.getContentType());
+        assertEquals("attachment; filename=\"users.csv\"", response.getHeader("Content-Disposition"));
+        assertTrue(response.getContentAsString().startsWith("id,username"));
+        assertThrows(IllegalArgumentException.class, () -> controller.exportUsers("xml", response));
+    }
+}
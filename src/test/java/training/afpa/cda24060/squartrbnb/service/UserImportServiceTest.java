@@ -0,0 +1,155 @@
+package training.afpa.cda24060.squartrbnb.service;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+import training.afpa.cda24060.squartrbnb.dto.UserImportResultDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserImportResultDTO.RowResult;
+import training.afpa.cda24060.squartrbnb.dto.UserImportResultDTO.Status;
+import training.afpa.cda24060.squartrbnb.entity.Role;
+import training.afpa.cda24060.squartrbnb.exception.ServiceUnavailableException;
+import training.afpa.cda24060.squartrbnb.repository.UserRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserImportServiceTest {
+
+    private static final String PASSWORD = "Secret123!";
+
+    @Mock private UserRepository userRepository;
+    @Mock private RoleCatalog roleCatalog;
+    @Mock private PasswordHashingService passwordHashing;
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private TransactionTemplate transactionTemplate;
+
+    private UserImportService importService;
+    private final AtomicInteger nextId = new AtomicInteger(100);
+
+    @BeforeEach
+    void setUp() {
+        importService = new UserImportService(userRepository, roleCatalog, passwordHashing, jdbcTemplate,
+                transactionTemplate, JsonMapper.builder().build(),
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(importService, "batchSize", 2);
+
+        Role role = new Role();
+        role.setId(1);
+        role.setName("UTILISATEUR");
+        lenient().when(roleCatalog.defaultRole()).thenReturn(role);
+        lenient().when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        lenient().when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of());
+        lenient().when(passwordHashing.hashAll(anyList())).thenAnswer(invocation ->
+                invocation.<List<String>>getArgument(0).stream().map(p -> "hash").toList());
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        // Un id par ligne du lot JDBC
+        lenient().when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation ->
+                IntStream.range(0, 2).mapToObj(i -> nextId.getAndIncrement()).toList());
+    }
+
+    private static String jsonUser(String name) {
+        return "{\"username\":\"" + name + "\",\"nom\":\"Doe\",\"prenom\":\"John\",\"email\":\"" + name
+                + "@example.com\",\"dateNaissance\":\"1990-01-15\",\"password\":\"" + PASSWORD + "\"}";
+    }
+
+    private UserImportResultDTO importJson(String body) throws IOException {
+        return importService.importUsers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                UserImportService.Format.JSON);
+    }
+
+    private UserImportResultDTO importCsv(String body) throws IOException {
+        return importService.importUsers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                UserImportService.Format.CSV);
+    }
+
+    private static List<Status> statuses(UserImportResultDTO result) {
+        return result.getRows().stream().map(RowResult::getStatus).toList();
+    }
+
+    @Test
+    void importJson_createsValidRowsAndReportsInvalidOnes() throws IOException {
+        UserImportResultDTO result = importJson("[" + jsonUser("alice") + ",{\"username\":\"x\"}]");
+
+        assertEquals(2, result.getTotal());
+        assertEquals(1, result.getCreated());
+        assertEquals(List.of(Status.CREATED, Status.FAILED), statuses(result));
+        assertNotNull(result.getRows().get(0).getId());
+    }
+
+    @Test
+    void importJson_rejectsNonObjectElementAsMalformedRow() throws IOException {
+        UserImportResultDTO result = importJson("[" + jsonUser("alice") + ",42,[1,2]," + jsonUser("bob") + "]");
+
+        assertEquals(4, result.getTotal());
+        assertEquals(List.of(Status.CREATED, Status.FAILED, Status.FAILED, Status.CREATED), statuses(result));
+        assertTrue(result.getRows().get(1).getError().contains("objet JSON attendu"));
+        assertEquals(4, result.getRows().get(3).getRow());
+    }
+
+    @Test
+    void importJson_rejectsBodyThatIsNotAnArray() {
+        assertThrows(IllegalArgumentException.class, () -> importJson(jsonUser("alice")));
+        assertThrows(IllegalArgumentException.class, () -> importJson("[" + jsonUser("alice")));
+    }
+
+    @Test
+    void importCsv_handlesBomQuotedFieldsAndDuplicatesInFile() throws IOException {
+        String csv = "\uFEFFusername,nom,prenom,email,dateNaissance,password\n"
+                + "alice,\"Doe, Jr\",Alice,alice@example.com,1990-01-15," + PASSWORD + "\n"
+                + "\n"
+                + "bob,Doe,Bob,ALICE@example.com,1990-01-15," + PASSWORD + "\n"
+                + "carol,Doe,Carol,carol@example.com,not-a-date," + PASSWORD + "\n";
+
+        UserImportResultDTO result = importCsv(csv);
+
+        assertEquals(List.of(Status.CREATED, Status.FAILED, Status.FAILED), statuses(result));
+        assertTrue(result.getRows().get(1).getError().startsWith("Email en double"));
+        assertTrue(result.getRows().get(2).getError().startsWith("Ligne illisible"));
+    }
+
+    @Test
+    void importJson_reportsRowsAlreadyInDatabase() throws IOException {
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of("Bob@example.com"));
+
+        UserImportResultDTO result = importJson("[" + jsonUser("alice") + "," + jsonUser("bob") + "]");
+
+        assertEquals(List.of(Status.CREATED, Status.FAILED), statuses(result));
+        assertTrue(result.getRows().get(1).getError().startsWith("Email déjà utilisé"));
+    }
+
+    @Test
+    void importJson_saturatedHashingMarksOnlyThatBatchForRetry() throws IOException {
+        when(passwordHashing.hashAll(anyList()))
+                .thenReturn(List.of("hash", "hash"))
+                .thenThrow(new ServiceUnavailableException("Service saturé"));
+
+        UserImportResultDTO result = importJson("[" + jsonUser("alice") + "," + jsonUser("bob") + ","
+                + jsonUser("carol") + "," + jsonUser("dave") + "]");
+
+        assertEquals(List.of(Status.CREATED, Status.CREATED, Status.RETRY, Status.RETRY), statuses(result));
+        assertEquals(2, result.getCreated());
+        assertEquals(2, result.getFailed());
+        verify(jdbcTemplate, times(1)).execute(any(ConnectionCallback.class));
+    }
+}
@@ -1,37 +1,67 @@
 package training.afpa.cda24060.squartrbnb.service;
 
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import training.afpa.cda24060.squartrbnb.dto.UserBatchResponseDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserBulkDeleteResultDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserCreateDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserMapper;
+import training.afpa.cda24060.squartrbnb.dto.UserPageDTO;
 import training.afpa.cda24060.squartrbnb.dto.UserResponseDTO;
+import training.afpa.cda24060.squartrbnb.dto.UserUpdateDTO;
 import training.afpa.cda24060.squartrbnb.entity.Role;
 import training.afpa.cda24060.squartrbnb.entity.User;
 import training.afpa.cda24060.squartrbnb.exception.DataConflictException;
 import training.afpa.cda24060.squartrbnb.exception.ResourceNotFoundException;
-import training.afpa.cda24060.squartrbnb.repository.RoleRepository;
 import training.afpa.cda24060.squartrbnb.repository.UserRepository;
 
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class UserServiceTest {
 
     @Mock private UserRepository userRepository;
-    @Mock private PasswordEncoder passwordEncoder;
-    @Mock private RoleRepository roleRepository;
+    @Mock private PasswordHashingService passwordHashing;
+    @Mock private TransactionTemplate transactionTemplate;
+    @Mock private RoleCatalog roleCatalog;
     @Mock private UserMapper userMapper;
+    @Mock private UserCache userCache;
+    @Spy private UserLookupCoalescer lookupCoalescer = new UserLookupCoalescer(Duration.ofSeconds(5));
     @InjectMocks private UserService userService;
 
     private UserCreateDTO dto;
@@ -41,6 +71,10 @@ class UserServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        lenient().doCallRealMethod().when(transactionTemplate).executeWithoutResult(any());
+
         role = new Role();
         role.setId(1);
         role.setName("UTILISATEUR");
@@ -76,41 +110,66 @@ class UserServiceTest {
 
     @Test
     void createUser_validData_returnsDTO() {
-        when(userRepository.existsByEmail(dto.getEmail())).thenReturn(false);
-        when(userRepository.existsByUsername(dto.getUsername())).thenReturn(false);
         when(userMapper.toEntity(dto)).thenReturn(user);
-        when(passwordEncoder.encode(dto.getPassword())).thenReturn("encodedPassword");
-        when(roleRepository.findByName("UTILISATEUR")).thenReturn(Optional.of(role));
-        when(userRepository.save(any(User.class))).thenReturn(user);
+        when(passwordHashing.hash(dto.getPassword())).thenReturn("encodedPassword");
+        when(roleCatalog.defaultRole()).thenReturn(role);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(user);
         when(userMapper.toResponseDTO(user)).thenReturn(responseDTO);
 
         UserResponseDTO result = userService.createUser(dto);
 
         assertNotNull(result);
         assertEquals("johndoe", result.getUsername());
-        verify(userRepository).save(any(User.class));
-        verify(passwordEncoder).encode(dto.getPassword());
+        verify(userRepository).saveAndFlush(any(User.class));
+        InOrder inOrder = inOrder(passwordHashing, transactionTemplate);
+        inOrder.verify(passwordHashing).hash(dto.getPassword());
+        inOrder.verify(transactionTemplate).execute(any());
+        verify(userRepository, never()).existsByEmail(any());
+        verify(userRepository, never()).existsByUsername(any());
     }
 
     @Test
     void createUser_existingEmail_throwsConflict() {
-        when(userRepository.existsByEmail(dto.getEmail())).thenReturn(true);
-        assertThrows(DataConflictException.class, () -> userService.createUser(dto));
-        verify(userRepository, never()).save(any());
+        mockCreateViolating("users." + User.UK_EMAIL);
+        DataConflictException e = assertThrows(DataConflictException.class, () -> userService.createUser(dto));
+        assertTrue(e.getMessage().startsWith("Email"));
     }
 
     @Test
     void createUser_existingUsername_throwsConflict() {
+        mockCreateViolating(User.UK_USERNAME);
+        DataConflictException e = assertThrows(DataConflictException.class, () -> userService.createUser(dto));
+        assertTrue(e.getMessage().startsWith("Username"));
+    }
+
+    @Test
+    void createUser_unknownConstraint_throwsGenericConflict() {
+        mockCreateViolating("fk_users_role");
+        DataConflictException e = assertThrows(DataConflictException.class, () -> userService.createUser(dto));
+        assertEquals("Conflit lors de la création de l'utilisateur", e.getMessage());
+    }
+
+    @Test
+    void createUser_legacyConstraintName_resolvesFieldByExistence() {
+        // Index créé avant le nommage uk_users_* : nom généré par Hibernate
+        mockCreateViolating("uk6dotkott2kjsp8vw4d0m25fb7");
         when(userRepository.existsByEmail(dto.getEmail())).thenReturn(false);
         when(userRepository.existsByUsername(dto.getUsername())).thenReturn(true);
-        assertThrows(DataConflictException.class, () -> userService.createUser(dto));
-        verify(userRepository, never()).save(any());
+        DataConflictException e = assertThrows(DataConflictException.class, () -> userService.createUser(dto));
+        assertTrue(e.getMessage().startsWith("Username"));
+    }
+
+    private void mockCreateViolating(String constraintName) {
+        when(userMapper.toEntity(dto)).thenReturn(user);
+        when(passwordHashing.hash(dto.getPassword())).thenReturn("encodedPassword");
+        when(roleCatalog.defaultRole()).thenReturn(role);
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException("Duplicate entry",
+                new ConstraintViolationException("Duplicate entry", new SQLException(), constraintName)));
     }
 
     @Test
     void getUserById_exists_returnsDTO() {
-        when(userRepository.findById(1)).thenReturn(Optional.of(user));
-        when(userMapper.toResponseDTO(user)).thenReturn(responseDTO);
+        when(userRepository.findViewById(1)).thenReturn(Optional.of(responseDTO));
 
         UserResponseDTO result = userService.getUserById(1);
 
@@ -118,23 +177,172 @@ class UserServiceTest {
         assertEquals(1, result.getId());
     }
 
+    @Test
+    void getUserById_cached_skipsRepository() {
+        when(userCache.getById(1)).thenReturn(Optional.of(responseDTO));
+
+        UserResponseDTO result = userService.getUserById(1);
+
+        assertEquals(1, result.getId());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getUsersByIds_keepsOrderAndReportsMissing() {
+        UserResponseDTO jane = UserResponseDTO.builder().id(2).username("janedoe").build();
+        when(userCache.getById(anyInt())).thenReturn(Optional.empty());
+        when(userCache.getById(2)).thenReturn(Optional.of(jane));
+        when(userRepository.findViewsByIdIn(List.of(3, 1))).thenReturn(List.of(responseDTO));
+
+        UserBatchResponseDTO result = userService.getUsersByIds(List.of(3, 2, 1, 2));
+
+        assertEquals(List.of(jane, responseDTO), result.getUsers());
+        assertEquals(List.of(3), result.getMissing());
+    }
+
     @Test
     void getUserById_notFound_throwsException() {
-        when(userRepository.findById(999)).thenReturn(Optional.empty());
+        when(userRepository.findViewById(999)).thenReturn(Optional.empty());
         assertThrows(ResourceNotFoundException.class, () -> userService.getUserById(999));
     }
 
+    @Test
+    void getUsersPage_moreRows_returnsNextCursor() {
+        UserResponseDTO second = UserResponseDTO.builder().id(2).username("janedoe").build();
+        when(userRepository.findViewsAfter(0, Limit.of(2))).thenReturn(List.of(responseDTO, second));
+
+        UserPageDTO page = userService.getUsersPage(null, 1);
+
+        assertEquals(1, page.getContent().size());
+        assertNotNull(page.getNextCursor());
+
+        when(userRepository.findViewsAfter(1, Limit.of(2))).thenReturn(List.of());
+        UserPageDTO next = userService.getUsersPage(page.getNextCursor(), 1);
+        assertTrue(next.getContent().isEmpty());
+        assertNull(next.getNextCursor());
+    }
+
+    @Test
+    void getUsersPage_invalidCursor_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> userService.getUsersPage("%%%", 10));
+        verify(userRepository, never()).findViewsAfter(anyInt(), any());
+    }
+
+    @Test
+    void getUserByUsername_concurrentCalls_singleRepositoryCall() throws Exception {
+        int callers = 16;
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findViewByUsername("johndoe")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(responseDTO);
+        });
+
+        List<UserResponseDTO> results = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Thread thread = new Thread(() -> results.add(userService.getUserByUsername("johndoe")));
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Libère la requête une fois que tous les appelants sont bloqués (requête ou attente du résultat)
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (threads.stream().anyMatch(t -> t.getState() != Thread.State.WAITING
+                && t.getState() != Thread.State.TIMED_WAITING) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (Thread thread : threads) thread.join(5_000);
+
+        assertEquals(callers, results.size());
+        assertTrue(results.stream().allMatch(r -> r == responseDTO));
+        verify(userRepository, times(1)).findViewByUsername("johndoe");
+    }
+
+    @Test
+    void getUserByUsername_concurrentNotFound_propagatesToAllCallers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findViewByUsername("ghost")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<UserResponseDTO> first = executor.submit(() -> userService.getUserByUsername("ghost"));
+            Future<UserResponseDTO> second = executor.submit(() -> userService.getUserByUsername("ghost"));
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<UserResponseDTO> future : List.of(first, second)) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(ResourceNotFoundException.class, e.getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void patchUser_photoOnly_singleUpdate() {
+        UserUpdateDTO patch = UserUpdateDTO.builder().photoPath("uploads/users/new.jpg").build();
+        when(userMapper.toPatchChanges(patch)).thenReturn(new HashMap<>(Map.of("photoPath", "uploads/users/new.jpg")));
+        when(userRepository.updateColumns(1, Map.of("photoPath", "uploads/users/new.jpg"))).thenReturn(1);
+
+        userService.patchUser(1, patch);
+
+        verify(userRepository, never()).findById(any());
+        verify(userCache).invalidateAfterCommit(1);
+    }
+
+    @Test
+    void patchUser_noRowUpdated_throwsNotFound() {
+        UserUpdateDTO patch = UserUpdateDTO.builder().nom("Martin").build();
+        when(userMapper.toPatchChanges(patch)).thenReturn(new HashMap<>(Map.of("nom", "Martin")));
+        when(userRepository.updateColumns(eq(999), any())).thenReturn(0);
+
+        assertThrows(ResourceNotFoundException.class, () -> userService.patchUser(999, patch));
+        verify(userCache, never()).invalidateAfterCommit(any());
+    }
+
+    @Test
+    void patchUser_blankValues_failValidation() {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        UserUpdateDTO blank = UserUpdateDTO.builder().nom("").prenom("  ").email("").username("   ").build();
+
+        Set<String> invalid = validator.validate(blank).stream()
+                .map(v -> v.getPropertyPath().toString())
+                .collect(Collectors.toSet());
+
+        assertEquals(Set.of("nom", "prenom", "email", "username"), invalid);
+        assertTrue(validator.validate(UserUpdateDTO.builder().photoPath("uploads/users/new.jpg").build()).isEmpty());
+        assertTrue(validator.validate(UserUpdateDTO.builder().nom("Martin").email("a@b.fr").build()).isEmpty());
+    }
+
     @Test
     void deleteUser_exists_deletesSuccessfully() {
-        when(userRepository.existsById(1)).thenReturn(true);
+        when(userRepository.removeById(1)).thenReturn(1);
         userService.deleteUser(1);
-        verify(userRepository).deleteById(1);
+        verify(userRepository).removeById(1);
+        verify(userRepository, never()).existsById(any());
+        verify(userCache).invalidateAfterCommit(1);
     }
 
     @Test
     void deleteUser_notFound_throwsException() {
-        when(userRepository.existsById(999)).thenReturn(false);
+        when(userRepository.removeById(999)).thenReturn(0);
         assertThrows(ResourceNotFoundException.class, () -> userService.deleteUser(999));
-        verify(userRepository, never()).deleteById(anyInt());
+        verify(userCache, never()).invalidateAfterCommit(any());
+    }
+
+    @Test
+    void deleteUsers_reportsMissingIds() {
+        when(userRepository.findExistingIds(List.of(3, 1, 2))).thenReturn(List.of(1, 3));
+
+        UserBulkDeleteResultDTO result = userService.deleteUsers(List.of(3, 1, 2, 3));
+
+        verify(userRepository).removeAllByIdIn(List.of(1, 3));
+        assertEquals(List.of(3, 1), result.getDeleted());
+        assertEquals(List.of(2), result.getMissing());
     }
 }
@@ -0,0 +1,45 @@
+package training.afpa.cda24060.squartrbnb.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvUtilsTest {
+
+    @Test
+    void escape_quotesOnlyWhenNeeded() {
+        assertEquals("", CsvUtils.escape(null));
+        assertEquals("plain", CsvUtils.escape("plain"));
+        assertEquals("42", CsvUtils.escape(42));
+        assertEquals("\"Doe, Jr\"", CsvUtils.escape("Doe, Jr"));
+        assertEquals("\"say \"\"hi\"\"\"", CsvUtils.escape("say \"hi\""));
+        assertEquals("\"two\nlines\"", CsvUtils.escape("two\nlines"));
+    }
+
+    @Test
+    void escape_neutralisesSpreadsheetFormulas() {
+        assertEquals("\"'=HYPERLINK(\"\"x\"\")\"", CsvUtils.escape("=HYPERLINK(\"x\")"));
+        assertEquals("'+33 6 12", CsvUtils.escape("+33 6 12"));
+        assertEquals("'-2+3", CsvUtils.escape("-2+3"));
+        assertEquals("'@SUM(A1)", CsvUtils.escape("@SUM(A1)"));
+        assertEquals("\"'=1,2\"", CsvUtils.escape("=1,2"));
+        assertEquals("-5", CsvUtils.escape(-5));
+        assertEquals("a=b", CsvUtils.escape("a=b"));
+    }
+
+    @Test
+    void parseLine_splitsQuotedAndEmptyFields() {
+        assertEquals(List.of("a", "b, c", "", "say \"hi\""), CsvUtils.parseLine("a,\"b, c\",,\"say \"\"hi\"\"\""));
+        assertEquals(List.of(""), CsvUtils.parseLine(""));
+        assertEquals(List.of("a", ""), CsvUtils.parseLine("a,"));
+    }
+
+    @Test
+    void parseLine_readsBackEscapedValues() {
+        List<String> values = List.of("Doe, Jr", "say \"hi\"", "plain");
+        String line = String.join(",", values.stream().map(CsvUtils::escape).toList());
+        assertEquals(values, CsvUtils.parseLine(line));
+    }
+}